@@ -67,11 +67,52 @@ export default class Video extends Component {
           tolerance,
         },
       });
+    } else if (NativeModules.VideoManager && NativeModules.VideoManager.seek) {
+      // Fire and forget, seekAsync reports whether the seek settled
+      NativeModules.VideoManager.seek(time, findNodeHandle(this._root)).catch(() => {});
     } else {
       this.setNativeProps({ seek: time });
     }
   };
 
+  seekAsync = async (time, tolerance = 100) => {
+    if (isNaN(time)) {throw new Error('Specified time is not a number');}
+
+    if (Platform.OS !== 'ios' && NativeModules.VideoManager && NativeModules.VideoManager.seek) {
+      return await NativeModules.VideoManager.seek(time, findNodeHandle(this._root));
+    }
+    this.seek(time, tolerance);
+  };
+
+  play = async () => {
+    if (NativeModules.VideoManager && NativeModules.VideoManager.play) {
+      return await NativeModules.VideoManager.play(findNodeHandle(this._root));
+    }
+    this.setNativeProps({ paused: false });
+  };
+
+  pause = async () => {
+    if (NativeModules.VideoManager && NativeModules.VideoManager.pause) {
+      return await NativeModules.VideoManager.pause(findNodeHandle(this._root));
+    }
+    this.setNativeProps({ paused: true });
+  };
+
+  setRate = async (rate) => {
+    if (NativeModules.VideoManager && NativeModules.VideoManager.setRate) {
+      return await NativeModules.VideoManager.setRate(rate, findNodeHandle(this._root));
+    }
+    this.setNativeProps({ rate });
+  };
+
+  selectTrack = async (kind, selection) => {
+    if (NativeModules.VideoManager && NativeModules.VideoManager.selectTrack) {
+      return await NativeModules.VideoManager.selectTrack(kind, selection, findNodeHandle(this._root));
+    }
+    const prop = { audio: 'selectedAudioTrack', text: 'selectedTextTrack', video: 'selectedVideoTrack' }[kind];
+    this.setNativeProps({ [prop]: selection });
+  };
+
   presentFullscreenPlayer = () => {
     this.setNativeProps({ fullscreen: true });
   };
@@ -80,10 +121,26 @@ export default class Video extends Component {
     this.setNativeProps({ fullscreen: false });
   };
 
+  getThumbnail = async (time) => {
+    return await NativeModules.VideoManager.getThumbnail(time, findNodeHandle(this._root));
+  }
+
   save = async (options?) => {
     return await NativeModules.VideoManager.save(options, findNodeHandle(this._root));
   }
 
+  getNetworkStats = async () => {
+    return await NativeModules.VideoManager.getNetworkStats();
+  }
+
+  refreshCookies = async () => {
+    return await NativeModules.VideoManager.refreshCookies();
+  }
+
+  resetNetworkStats = async () => {
+    return await NativeModules.VideoManager.resetNetworkStats();
+  }
+
   restoreUserInterfaceForPictureInPictureStopCompleted = (restored) => {
     this.setNativeProps({ restoreUserInterfaceForPIPStopCompletionHandler: restored });
   };
@@ -138,12 +195,30 @@ export default class Video extends Component {
     }
   };
 
+  _onNetworkStats = (event) => {
+    if (this.props.onNetworkStats) {
+      this.props.onNetworkStats(event.nativeEvent);
+    }
+  };
+
   _onSeek = (event) => {
     if (this.props.onSeek) {
       this.props.onSeek(event.nativeEvent);
     }
   };
 
+  _onSeekSettled = (event) => {
+    if (this.props.onSeekSettled) {
+      this.props.onSeekSettled(event.nativeEvent);
+    }
+  };
+
+  _onStartupTrace = (event) => {
+    if (this.props.onStartupTrace) {
+      this.props.onStartupTrace(event.nativeEvent);
+    }
+  };
+
   _onEnd = (event) => {
     if (this.props.onEnd) {
       this.props.onEnd(event.nativeEvent);
@@ -327,10 +402,13 @@ export default class Video extends Component {
       onVideoError: this._onError,
       onVideoProgress: this._onProgress,
       onVideoSeek: this._onSeek,
+      onVideoSeekSettled: this._onSeekSettled,
+      onVideoStartupTrace: this._onStartupTrace,
       onVideoEnd: this._onEnd,
       onVideoBuffer: this._onBuffer,
       onVideoBufferProgress: this._onBufferProgress,
       onVideoBandwidthUpdate: this._onBandwidthUpdate,
+      onVideoNetworkStats: this._onNetworkStats,
       onTimedMetadata: this._onTimedMetadata,
       onVideoAudioBecomingNoisy: this._onAudioBecomingNoisy,
       onVideoExternalPlaybackChange: this._onExternalPlaybackChange,
@@ -403,6 +481,8 @@ Video.propTypes = {
   onVideoProgress: PropTypes.func,
   onVideoBandwidthUpdate: PropTypes.func,
   onVideoSeek: PropTypes.func,
+  onVideoSeekSettled: PropTypes.func,
+  onVideoStartupTrace: PropTypes.func,
   onVideoEnd: PropTypes.func,
   onTimedMetadata: PropTypes.func,
   onVideoAudioBecomingNoisy: PropTypes.func,
@@ -432,7 +512,15 @@ Video.propTypes = {
   }),
   localSourceEncryptionKeyScheme: PropTypes.string,
   minLoadRetryCount: PropTypes.number,
+  metadataFilter: PropTypes.shape({
+    schemes: PropTypes.arrayOf(PropTypes.string),
+    frameIds: PropTypes.arrayOf(PropTypes.string),
+    dedupeWindowMs: PropTypes.number,
+    maxRate: PropTypes.number,
+  }),
   maxBitRate: PropTypes.number,
+  limitResolutionToView: PropTypes.bool,
+  exportChromeTrace: PropTypes.bool,
   resizeMode: PropTypes.string,
   poster: PropTypes.string,
   posterResizeMode: Image.propTypes.resizeMode,
@@ -472,6 +560,16 @@ Video.propTypes = {
       language: PropTypes.string.isRequired,
     })
   ),
+  thumbnails: PropTypes.arrayOf(
+    PropTypes.shape({
+      uri: PropTypes.string.isRequired,
+      startTime: PropTypes.number,
+      duration: PropTypes.number,
+      columns: PropTypes.number,
+      rows: PropTypes.number,
+    })
+  ),
+  thumbnailPreview: PropTypes.number,
   paused: PropTypes.bool,
   muted: PropTypes.bool,
   volume: PropTypes.number,
@@ -482,14 +580,24 @@ Video.propTypes = {
     bufferForPlaybackAfterRebufferMs: PropTypes.number,
     maxHeapAllocationPercent: PropTypes.number,
   }),
+  liveConfig: PropTypes.shape({
+    targetOffsetMs: PropTypes.number,
+    minOffsetMs: PropTypes.number,
+    maxOffsetMs: PropTypes.number,
+    minPlaybackSpeed: PropTypes.number,
+    maxPlaybackSpeed: PropTypes.number,
+  }),
   stereoPan: PropTypes.number,
   rate: PropTypes.number,
+  seekParameters: PropTypes.oneOf(['exact', 'closestSync', 'previousSync', 'nextSync']),
   pictureInPicture: PropTypes.bool,
   playInBackground: PropTypes.bool,
   preferredForwardBufferDuration: PropTypes.number,
   playWhenInactive: PropTypes.bool,
   ignoreSilentSwitch: PropTypes.oneOf(['ignore', 'obey']),
   reportBandwidth: PropTypes.bool,
+  networkStatsInterval: PropTypes.number,
+  parallelRangeRequests: PropTypes.oneOf(['auto', 'always', 'never']),
   contentStartTime: PropTypes.number,
   disableFocus: PropTypes.bool,
   disableBuffering: PropTypes.bool,
@@ -509,7 +617,10 @@ Video.propTypes = {
   onError: PropTypes.func,
   onProgress: PropTypes.func,
   onBandwidthUpdate: PropTypes.func,
+  onNetworkStats: PropTypes.func,
   onSeek: PropTypes.func,
+  onSeekSettled: PropTypes.func,
+  onStartupTrace: PropTypes.func,
   onEnd: PropTypes.func,
   onFullscreenPlayerWillPresent: PropTypes.func,
   onFullscreenPlayerDidPresent: PropTypes.func,
@@ -0,0 +1,163 @@
+package com.brentvatne.exoplayer;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Arbitrates network usage between players that are loading at the same time.
+ *
+ * Every player reports how much it has buffered from its load control. While a player has less than
+ * it needs to start or resume playback it is considered hungry, and players with a lower priority
+ * pause loading until it has caught up. A player that waits for its buffer to play is never paused,
+ * and no player is paused for longer than {@link #MAX_YIELD_MS} in a row. The transfers of each
+ * player are also tracked so that the shared bandwidth estimate can be split between the players
+ * that are loading in parallel, by priority.
+ *
+ * Unlike {@link DecoderBudget} this class is called from the playback threads, so all methods are
+ * synchronized.
+ */
+final class BandwidthArbiter {
+
+    /** A hungry report older than this is ignored, in case the player stopped loading altogether. */
+    private static final long HUNGER_TIMEOUT_MS = 2000;
+    /** A transfer without progress for this long no longer counts, in case its end was not reported. */
+    private static final long TRANSFER_TIMEOUT_MS = 2000;
+    /**
+     * The longest a player pauses loading for the others, so a hungry player that never catches up,
+     * e.g. on a link slower than its bitrate, cannot starve the others.
+     */
+    private static final long MAX_YIELD_MS = 5000;
+
+    private static final class Entry {
+        int priority;
+        boolean hungry;
+        long hungerReportedAtMs;
+        /** When the player started to yield to the others, or -1 while it loads. */
+        long yieldingSinceMs = -1;
+        int openTransfers;
+        long transferActivityAtMs;
+
+        boolean isTransferring(long nowMs) {
+            return openTransfers > 0 && nowMs - transferActivityAtMs < TRANSFER_TIMEOUT_MS;
+        }
+    }
+
+    private static final Map<Object, Entry> entries = new HashMap<>();
+
+    private BandwidthArbiter() {
+    }
+
+    static synchronized void register(Object player) {
+        if (!entries.containsKey(player)) {
+            entries.put(player, new Entry());
+        }
+    }
+
+    static synchronized void unregister(Object player) {
+        entries.remove(player);
+    }
+
+    static synchronized void setPriority(Object player, int priority) {
+        Entry entry = entries.get(player);
+        if (entry != null) {
+            entry.priority = priority;
+        }
+    }
+
+    /**
+     * Records the buffer level of a player and decides whether it may keep loading.
+     *
+     * @param player The player asking to load.
+     * @param bufferedDurationUs The duration currently buffered ahead of the playback position.
+     * @param playableBufferUs The buffer duration the player needs to start or resume playback,
+     *     below which it needs the network urgently.
+     * @param waitingToPlay Whether the player is buffering while it should be playing, in which
+     *     case it always loads.
+     * @return Whether the player may continue loading.
+     */
+    static synchronized boolean shouldContinueLoading(Object player, long bufferedDurationUs,
+                                                      long playableBufferUs, boolean waitingToPlay) {
+        Entry entry = entries.get(player);
+        if (entry == null) {
+            return true;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        entry.hungry = waitingToPlay || bufferedDurationUs < playableBufferUs;
+        entry.hungerReportedAtMs = nowMs;
+        if (waitingToPlay || !isOutranked(entry, nowMs)) {
+            entry.yieldingSinceMs = -1;
+            return true;
+        }
+        if (entry.yieldingSinceMs == -1) {
+            entry.yieldingSinceMs = nowMs;
+        } else if (nowMs - entry.yieldingSinceMs >= MAX_YIELD_MS) {
+            // Load once, the next refusal starts a new pause
+            entry.yieldingSinceMs = -1;
+            return true;
+        }
+        return false;
+    }
+
+    /** @return Whether a more important player is starving. */
+    private static boolean isOutranked(Entry entry, long nowMs) {
+        for (Entry other : entries.values()) {
+            if (other != entry
+                    && other.priority > entry.priority
+                    && other.hungry
+                    && nowMs - other.hungerReportedAtMs < HUNGER_TIMEOUT_MS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static synchronized void onTransferStart(Object player) {
+        Entry entry = entries.get(player);
+        if (entry != null) {
+            entry.openTransfers++;
+            entry.transferActivityAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void onBytesTransferred(Object player) {
+        Entry entry = entries.get(player);
+        if (entry != null) {
+            entry.transferActivityAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void onTransferEnd(Object player) {
+        Entry entry = entries.get(player);
+        if (entry != null && entry.openTransfers > 0) {
+            entry.openTransfers--;
+        }
+    }
+
+    /**
+     * @return The share of the measured bandwidth that the player gets, between 0 and 1. The
+     *     bandwidth is split between the players that are transferring, weighted by priority. A
+     *     player that is not transferring, e.g. idle with a full buffer, is estimated as if it were
+     *     the next to load, and gets its share among the ones that are.
+     */
+    static synchronized double getShare(Object player) {
+        Entry entry = entries.get(player);
+        if (entry == null) {
+            return 1;
+        }
+        long nowMs = SystemClock.elapsedRealtime();
+        int weight = getWeight(entry);
+        int totalWeight = weight;
+        for (Entry other : entries.values()) {
+            if (other != entry && other.isTransferring(nowMs)) {
+                totalWeight += getWeight(other);
+            }
+        }
+        return (double) weight / totalWeight;
+    }
+
+    private static int getWeight(Entry entry) {
+        return Math.max(entry.priority, 0) + 1;
+    }
+}
@@ -1,8 +1,10 @@
 package com.brentvatne.exoplayer;
 
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
 import com.facebook.react.bridge.ReactContext;
-import com.facebook.react.modules.network.CookieJarContainer;
-import com.facebook.react.modules.network.ForwardingCookieHandler;
 import com.facebook.react.modules.network.OkHttpClientProvider;
 import com.google.android.exoplayer2.ext.okhttp.OkHttpDataSourceFactory;
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -11,9 +13,22 @@ import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.util.Util;
 
-import okhttp3.JavaNetCookieJar;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Cookie;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class DataSourceUtil {
 
@@ -24,6 +39,9 @@ public class DataSourceUtil {
     private static DataSource.Factory defaultDataSourceFactory = null;
     private static HttpDataSource.Factory defaultHttpDataSourceFactory = null;
     private static String userAgent = null;
+    private static MediaHttpClientConfig mediaHttpClientConfig = MediaHttpClientConfig.DEFAULT;
+    private static OkHttpClient mediaHttpClient = null;
+    private static MediaCookieJar mediaCookieJar = null;
 
     public static void setUserAgent(String userAgent) {
         DataSourceUtil.userAgent = userAgent;
@@ -70,20 +88,94 @@ public class DataSourceUtil {
         DataSourceUtil.defaultHttpDataSourceFactory = factory;
     }
 
+    /**
+     * Sets the settings of the media client. The client and the data source factories built with
+     * the previous settings are dropped.
+     */
+    public static void setMediaHttpClientConfig(MediaHttpClientConfig config) {
+        if (config == mediaHttpClientConfig) {
+            return;
+        }
+        mediaHttpClientConfig = config;
+        mediaHttpClient = null;
+        defaultDataSourceFactory = null;
+        defaultHttpDataSourceFactory = null;
+    }
+
+    /**
+     * @return The client that loads the media, derived from the React Native client.
+     */
+    public static OkHttpClient getMediaHttpClient(ReactContext context) {
+        // The client outlives the React context, e.g. across reloads of the app
+        getMediaCookieJar(context).bind(context);
+        if (mediaHttpClient == null) {
+            mediaHttpClient = buildMediaHttpClient(context, mediaHttpClientConfig);
+            warmUp(mediaHttpClient, mediaHttpClientConfig);
+        }
+        return mediaHttpClient;
+    }
+
+    public static void setMediaHttpClient(OkHttpClient client) {
+        DataSourceUtil.mediaHttpClient = client;
+    }
+
+    /**
+     * Reloads the cookies of the media requests from the React Native cookie store in the
+     * background, after the app changed it.
+     *
+     * @param onRefreshed Called from a background thread once the cookies are reloaded, or null.
+     */
+    public static void refreshCookies(Runnable onRefreshed) {
+        if (mediaCookieJar != null) {
+            mediaCookieJar.refresh(onRefreshed);
+        } else if (onRefreshed != null) {
+            // Nothing loaded yet, the first requests read the store
+            onRefreshed.run();
+        }
+    }
+
+    /**
+     * @return The {@code Cookie} header that the media requests to the URL send, or null if they
+     *     send none.
+     */
+    @Nullable
+    static String getMediaCookieHeader(Uri uri) {
+        HttpUrl url = HttpUrl.parse(uri.toString());
+        if (mediaCookieJar == null || url == null) {
+            return null;
+        }
+        List<Cookie> cookies = mediaCookieJar.loadForRequest(url);
+        if (cookies.isEmpty()) {
+            return null;
+        }
+        StringBuilder header = new StringBuilder();
+        for (Cookie cookie : cookies) {
+            if (header.length() > 0) {
+                header.append("; ");
+            }
+            header.append(cookie.name()).append('=').append(cookie.value());
+        }
+        return header.toString();
+    }
+
+    private static MediaCookieJar getMediaCookieJar(ReactContext context) {
+        if (mediaCookieJar == null) {
+            mediaCookieJar = new MediaCookieJar(context);
+        }
+        return mediaCookieJar;
+    }
+
     private static DataSource.Factory buildRawDataSourceFactory(ReactContext context) {
         return new RawResourceDataSourceFactory(context.getApplicationContext());
     }
 
     private static DataSource.Factory buildDataSourceFactory(ReactContext context, DefaultBandwidthMeter bandwidthMeter, Map<String, String> requestHeaders) {
-        return new DefaultDataSourceFactory(context, bandwidthMeter,
-                buildHttpDataSourceFactory(context, bandwidthMeter, requestHeaders));
+        return new ManifestCachingDataSource.Factory(new DefaultDataSourceFactory(context, bandwidthMeter,
+                buildHttpDataSourceFactory(context, bandwidthMeter, requestHeaders)), requestHeaders);
     }
 
     private static HttpDataSource.Factory buildHttpDataSourceFactory(ReactContext context, DefaultBandwidthMeter bandwidthMeter, Map<String, String> requestHeaders) {
-        OkHttpClient client = OkHttpClientProvider.getOkHttpClient();
-        CookieJarContainer container = (CookieJarContainer) client.cookieJar();
-        ForwardingCookieHandler handler = new ForwardingCookieHandler(context);
-        container.setCookieJar(new JavaNetCookieJar(handler));
+        OkHttpClient client = getMediaHttpClient(context);
         OkHttpDataSourceFactory okHttpDataSourceFactory = new OkHttpDataSourceFactory(client, getUserAgent(context), bandwidthMeter);
 
         if (requestHeaders != null)
@@ -91,4 +183,53 @@ public class DataSourceUtil {
 
         return okHttpDataSourceFactory;
     }
+
+    private static OkHttpClient buildMediaHttpClient(ReactContext context, MediaHttpClientConfig config) {
+        OkHttpClient client = OkHttpClientProvider.getOkHttpClient();
+
+        // The derived client keeps the interceptors of the app client, but not its connection pool
+        // and dispatcher, which would be shared with the API calls of the app, and reads the cookies
+        // of the app from memory rather than from the React Native cookie store on every request
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.maxRequests);
+        dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost);
+        OkHttpClient.Builder builder = client.newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(config.maxIdleConnections, config.keepAliveMs, TimeUnit.MILLISECONDS))
+                .connectTimeout(config.connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(config.readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(config.writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .cookieJar(getMediaCookieJar(context))
+                .eventListenerFactory(MediaNetworkStats.EVENT_LISTENER_FACTORY);
+        if (!config.http2Enabled) {
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Opens the connections to the warm up URLs in the background. The responses are not used,
+     * the connections stay in the pool for the first requests of the player.
+     */
+    private static void warmUp(OkHttpClient client, MediaHttpClientConfig config) {
+        for (String url : config.warmUpUrls) {
+            Request request;
+            try {
+                request = new Request.Builder().url(url).head().build();
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    // Only a missed optimization, the player will connect when it needs to
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                }
+            });
+        }
+    }
 }
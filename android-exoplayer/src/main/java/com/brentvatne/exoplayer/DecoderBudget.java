@@ -0,0 +1,205 @@
+package com.brentvatne.exoplayer;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Arbitrates the hardware video decoders shared by every mounted player.
+ *
+ * Devices only allow a limited number of concurrent {@code MediaCodec} instances. Players register
+ * themselves here and the budget is granted to the highest priority ones (visible, then playing,
+ * then most recently interacted with). Players without a video track do not take a decoder. Players
+ * losing their grant are expected to disable their video renderer, which releases the codec, and to
+ * enable it again once they are granted back.
+ *
+ * All methods must be called from the main thread.
+ */
+final class DecoderBudget {
+
+    private static final String TAG = "DecoderBudget";
+
+    /** Used when the device does not report how many decoder instances it supports. */
+    private static final int DEFAULT_MAX_DECODERS = 4;
+    /**
+     * A budget lowered after a decoder failure is restored after this long, as other apps may have
+     * released their codecs since.
+     */
+    private static final long REDUCED_BUDGET_DURATION_MS = 60 * 1000;
+    /**
+     * A revoked player releases its codec on its playback thread, after it was revoked. A decoder
+     * failure this soon after a revocation is assumed to be caused by the codec not being released
+     * yet.
+     */
+    private static final long CODEC_RELEASE_DELAY_MS = 2000;
+
+    interface Client {
+        /**
+         * @return The current priority of the player, higher values win the decoder budget.
+         */
+        int getDecoderPriority();
+
+        /**
+         * @return The {@link android.os.SystemClock#elapsedRealtime()} of the last user interaction.
+         */
+        long getLastInteractionTimeMs();
+
+        /**
+         * @return Whether the player needs a video decoder, false once its source is known to have
+         *     no video track. {@link #invalidate()} must be called when it changes.
+         */
+        boolean needsVideoDecoder();
+
+        void onDecoderGranted();
+
+        void onDecoderRevoked();
+    }
+
+    private static final List<Client> clients = new ArrayList<>();
+    private static final Set<Client> grantedClients = new HashSet<>();
+    private static int maxDecoders = 0;
+    /** The budget after a decoder failure, 0 when it is not lowered. */
+    private static int reducedMaxDecoders = 0;
+    private static long reducedAtMs;
+    private static long revokedAtMs = -CODEC_RELEASE_DELAY_MS;
+
+    private static final Comparator<Client> PRIORITY_ORDER = new Comparator<Client>() {
+        @Override
+        public int compare(Client a, Client b) {
+            if (a.getDecoderPriority() != b.getDecoderPriority()) {
+                return b.getDecoderPriority() - a.getDecoderPriority();
+            }
+            return Long.compare(b.getLastInteractionTimeMs(), a.getLastInteractionTimeMs());
+        }
+    };
+
+    private DecoderBudget() {
+    }
+
+    private static int getMaxDecoders() {
+        if (maxDecoders <= 0) {
+            maxDecoders = queryDeviceMaxDecoders();
+        }
+        if (reducedMaxDecoders > 0
+                && SystemClock.elapsedRealtime() - reducedAtMs > REDUCED_BUDGET_DURATION_MS) {
+            reducedMaxDecoders = 0;
+        }
+        return reducedMaxDecoders > 0 ? Math.min(maxDecoders, reducedMaxDecoders) : maxDecoders;
+    }
+
+    static void register(Client client) {
+        if (!clients.contains(client)) {
+            clients.add(client);
+        }
+        rebalance();
+    }
+
+    static void unregister(Client client) {
+        clients.remove(client);
+        if (grantedClients.remove(client)) {
+            // A codec was released, try the full budget again
+            reducedMaxDecoders = 0;
+        }
+        rebalance();
+    }
+
+    /**
+     * Must be called whenever the priority of a registered client changes.
+     */
+    static void invalidate() {
+        rebalance();
+    }
+
+    /**
+     * Called when a granted client failed to instantiate a decoder. Right after a revocation the
+     * revoked codec may not be released yet, and the client only has to retry. Otherwise the
+     * device, or other apps, allow fewer codecs than we assumed, so the budget shrinks to what is
+     * held by the other clients, which revokes the lowest priority one. The budget is restored
+     * when a client releases its decoder or after {@link #REDUCED_BUDGET_DURATION_MS}.
+     *
+     * @return Whether the client should prepare again, with the decoder of the revoked client or
+     *     without video if it was revoked itself. False if no other client holds a decoder to
+     *     reclaim, the failure is then not caused by the budget.
+     */
+    static boolean onDecoderUnavailable(Client client) {
+        if (!grantedClients.contains(client)) {
+            return false;
+        }
+        if (SystemClock.elapsedRealtime() - revokedAtMs < CODEC_RELEASE_DELAY_MS) {
+            return true;
+        }
+        if (grantedClients.size() <= 1) {
+            return false;
+        }
+        reducedMaxDecoders = grantedClients.size() - 1;
+        reducedAtMs = SystemClock.elapsedRealtime();
+        Log.w(TAG, "Decoder instantiation failed, lowering decoder budget to " + reducedMaxDecoders);
+        rebalance();
+        return true;
+    }
+
+    private static void rebalance() {
+        List<Client> ordered = new ArrayList<>(clients);
+        Collections.sort(ordered, PRIORITY_ORDER);
+        int budget = getMaxDecoders();
+
+        List<Client> revoked = new ArrayList<>();
+        List<Client> granted = new ArrayList<>();
+        int holders = 0;
+        for (Client client : ordered) {
+            boolean shouldHold = client.needsVideoDecoder() && holders < budget;
+            if (shouldHold) {
+                holders++;
+            }
+            boolean holds = grantedClients.contains(client);
+            if (holds && !shouldHold) {
+                revoked.add(client);
+            } else if (!holds && shouldHold) {
+                granted.add(client);
+            }
+        }
+
+        // The revoked clients release their codecs later, on their playback threads, so a granted
+        // client may still fail to instantiate its codec, see onDecoderUnavailable
+        for (Client client : revoked) {
+            grantedClients.remove(client);
+            client.onDecoderRevoked();
+        }
+        if (!revoked.isEmpty()) {
+            revokedAtMs = SystemClock.elapsedRealtime();
+        }
+        for (Client client : granted) {
+            grantedClients.add(client);
+            client.onDecoderGranted();
+        }
+    }
+
+    private static int queryDeviceMaxDecoders() {
+        if (Build.VERSION.SDK_INT < 23) {
+            return DEFAULT_MAX_DECODERS;
+        }
+        try {
+            MediaCodecInfo codecInfo = MediaCodecUtil.getDecoderInfo(MimeTypes.VIDEO_H264, false, false);
+            if (codecInfo != null && codecInfo.capabilities != null) {
+                int max = codecInfo.capabilities.getMaxSupportedInstances();
+                if (max > 0) {
+                    return max;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to query decoder capabilities: " + e.toString());
+        }
+        return DEFAULT_MAX_DECODERS;
+    }
+}
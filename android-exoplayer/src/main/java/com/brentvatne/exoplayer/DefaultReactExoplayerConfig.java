@@ -10,6 +10,7 @@ public class DefaultReactExoplayerConfig implements ReactExoplayerConfig {
 
     private final DefaultBandwidthMeter bandwidthMeter;
     private boolean disableDisconnectError = false;
+    private MediaHttpClientConfig mediaHttpClientConfig = MediaHttpClientConfig.DEFAULT;
 
     public DefaultReactExoplayerConfig(Context context) {
         this.bandwidthMeter = new DefaultBandwidthMeter.Builder(context).build();
@@ -35,4 +36,13 @@ public class DefaultReactExoplayerConfig implements ReactExoplayerConfig {
     public DefaultBandwidthMeter getBandwidthMeter() {
         return bandwidthMeter;
     }
+
+    @Override
+    public MediaHttpClientConfig getMediaHttpClientConfig() {
+        return mediaHttpClientConfig;
+    }
+
+    public void setMediaHttpClientConfig(MediaHttpClientConfig mediaHttpClientConfig) {
+        this.mediaHttpClientConfig = mediaHttpClientConfig;
+    }
 }
@@ -225,6 +225,21 @@ public final class ExoPlayerView extends FrameLayout {
         shutterView.setVisibility(VISIBLE);
     }
 
+    /**
+     * Shows cues of a text track rendered outside of the player, see {@link SideloadedTextTracks}.
+     */
+    public void setSideloadedCues(List<Cue> cues) {
+        subtitleLayout.onCues(cues);
+    }
+
+    /**
+     * Listens to the bounds of the area the video is rendered in. It follows the resize mode and
+     * the video aspect ratio, and is larger than this view when the video is cropped.
+     */
+    public void addVideoLayoutChangeListener(View.OnLayoutChangeListener listener) {
+        layout.addOnLayoutChangeListener(listener);
+    }
+
     public void invalidateAspectRatio() {
         // Resetting aspect ratio will force layout refresh on next video size changed
         layout.invalidateAspectRatio();
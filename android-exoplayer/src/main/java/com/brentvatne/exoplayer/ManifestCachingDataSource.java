@@ -0,0 +1,401 @@
+package com.brentvatne.exoplayer;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.HttpDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okhttp3.CacheControl;
+import okhttp3.Headers;
+
+/**
+ * Keeps the manifests in memory, to start the sources that were already loaded without waiting
+ * for their manifests and to refresh live manifests with conditional requests.
+ *
+ * Static manifests, i.e. HLS multivariant and VOD playlists and static DASH and SmoothStreaming
+ * manifests, are served from the cache and revalidated in the background, so the next load gets
+ * the update, for as long as their {@code Cache-Control: max-age} allows and at most
+ * {@link #MAX_STALE_MS}. Older ones, e.g. with signed segment URLs that may have expired, and live
+ * manifests are always requested, with the {@code ETag} and {@code Last-Modified} of the cached
+ * response, and the cached response is served when the server answers that it did not change.
+ * Responses with {@code no-store} or {@code no-cache} are not cached. Manifests are requested
+ * with gzip.
+ *
+ * Responses are cached per URL, request headers and cookies, so a manifest personalized for a
+ * user is never served to another request.
+ *
+ * Other requests are passed through.
+ */
+final class ManifestCachingDataSource implements DataSource {
+
+    private static final int MAX_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_ENTRY_BYTES = 1024 * 1024;
+    /** A static manifest is not revalidated again for this long after its last validation. */
+    private static final long REVALIDATION_INTERVAL_MS = 30 * 1000;
+    /** A static manifest validated longer ago than this is revalidated before being served. */
+    private static final long MAX_STALE_MS = 10 * 60 * 1000;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private static final ExecutorService revalidationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ManifestCachingDataSource");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static final class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final Map<String, String> requestHeaders;
+
+        /**
+         * @param requestHeaders The headers the upstream adds to every request, or null.
+         */
+        Factory(DataSource.Factory upstreamFactory, @Nullable Map<String, String> requestHeaders) {
+            this.upstreamFactory = upstreamFactory;
+            this.requestHeaders = requestHeaders != null
+                    ? new TreeMap<>(requestHeaders)
+                    : Collections.<String, String>emptyMap();
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ManifestCachingDataSource(upstreamFactory, requestHeaders);
+        }
+    }
+
+    private static final class Entry {
+        final byte[] data;
+        final Map<String, List<String>> responseHeaders;
+        @Nullable final String etag;
+        @Nullable final String lastModified;
+        final boolean live;
+        final boolean cacheable;
+        /** How long the manifest is served without waiting for a revalidation. */
+        final long maxAgeMs;
+        long validatedAtMs;
+        boolean revalidating;
+
+        Entry(byte[] data, Map<String, List<String>> responseHeaders) {
+            this.data = data;
+            this.responseHeaders = responseHeaders;
+            etag = getHeader(responseHeaders, "ETag");
+            lastModified = getHeader(responseHeaders, "Last-Modified");
+            live = isLive(data);
+            CacheControl cacheControl = CacheControl.parse(toHeaders(responseHeaders));
+            cacheable = !cacheControl.noStore() && !cacheControl.noCache();
+            maxAgeMs = cacheControl.maxAgeSeconds() != -1
+                    ? Math.min(cacheControl.maxAgeSeconds() * 1000L, MAX_STALE_MS)
+                    : MAX_STALE_MS;
+            validatedAtMs = SystemClock.elapsedRealtime();
+        }
+
+        /** @return Whether the manifest can be served while it is revalidated in the background. */
+        boolean isFresh() {
+            return !live && SystemClock.elapsedRealtime() - validatedAtMs < maxAgeMs;
+        }
+    }
+
+    /** Least recently used first. */
+    private static final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static int cacheBytes;
+
+    private final DataSource.Factory upstreamFactory;
+    private final Map<String, String> requestHeaders;
+    private final List<TransferListener> transferListeners = new ArrayList<>();
+
+    @Nullable private DataSource upstream;
+    @Nullable private Uri uri;
+    @Nullable private Entry entry;
+    private int entryOffset;
+
+    private ManifestCachingDataSource(DataSource.Factory upstreamFactory, Map<String, String> requestHeaders) {
+        this.upstreamFactory = upstreamFactory;
+        this.requestHeaders = requestHeaders;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        transferListeners.add(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        if (!isManifestRequest(dataSpec)) {
+            upstream = createUpstream();
+            long length = upstream.open(dataSpec);
+            uri = upstream.getUri();
+            return length;
+        }
+
+        String key = getCacheKey(dataSpec);
+        Entry cached = getCached(key);
+        if (cached != null && isFresh(cached)) {
+            revalidate(key, cached, dataSpec);
+            return serve(dataSpec, cached);
+        }
+
+        Entry fetched;
+        DataSource fetchUpstream = createUpstream();
+        try {
+            fetched = fetch(fetchUpstream, dataSpec, cached);
+        } finally {
+            fetchUpstream.close();
+        }
+        if (fetched == null) {
+            // Not modified
+            return serve(dataSpec, cached);
+        }
+        put(key, fetched);
+        return serve(dataSpec, fetched);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (upstream != null) {
+            return upstream.read(buffer, offset, length);
+        }
+        if (entry == null || entryOffset == entry.data.length) {
+            return C.RESULT_END_OF_INPUT;
+        }
+        int read = Math.min(length, entry.data.length - entryOffset);
+        System.arraycopy(entry.data, entryOffset, buffer, offset, read);
+        entryOffset += read;
+        return read;
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        if (upstream != null) {
+            return upstream.getResponseHeaders();
+        }
+        return entry != null ? entry.responseHeaders : Collections.<String, List<String>>emptyMap();
+    }
+
+    @Override
+    public void close() throws IOException {
+        uri = null;
+        entry = null;
+        if (upstream != null) {
+            try {
+                upstream.close();
+            } finally {
+                upstream = null;
+            }
+        }
+    }
+
+    private long serve(DataSpec dataSpec, Entry entry) {
+        this.entry = entry;
+        entryOffset = 0;
+        uri = dataSpec.uri;
+        return entry.data.length;
+    }
+
+    /**
+     * @return The key of the response to the request: its URL, its headers and the cookies sent
+     *     with it.
+     */
+    private String getCacheKey(DataSpec dataSpec) {
+        StringBuilder key = new StringBuilder(dataSpec.uri.toString());
+        Map<String, String> headers = new TreeMap<>(requestHeaders);
+        headers.putAll(dataSpec.httpRequestHeaders);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            key.append('\n').append(header.getKey().toLowerCase(Locale.US)).append(": ").append(header.getValue());
+        }
+        String cookies = DataSourceUtil.getMediaCookieHeader(dataSpec.uri);
+        if (cookies != null) {
+            key.append("\ncookie: ").append(cookies);
+        }
+        return key.toString();
+    }
+
+    private DataSource createUpstream() {
+        DataSource upstream = upstreamFactory.createDataSource();
+        for (TransferListener transferListener : transferListeners) {
+            upstream.addTransferListener(transferListener);
+        }
+        return upstream;
+    }
+
+    /**
+     * Revalidates a static manifest in the background, unless it was recently.
+     */
+    private void revalidate(final String key, final Entry cached, final DataSpec dataSpec) {
+        synchronized (ManifestCachingDataSource.class) {
+            if (cached.revalidating
+                    || SystemClock.elapsedRealtime() - cached.validatedAtMs < REVALIDATION_INTERVAL_MS) {
+                return;
+            }
+            cached.revalidating = true;
+        }
+        // Not reported to the transfer listeners, the player is not waiting for it
+        final DataSource revalidationUpstream = upstreamFactory.createDataSource();
+        revalidationExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Entry fetched = fetch(revalidationUpstream, dataSpec, cached);
+                    if (fetched != null) {
+                        put(key, fetched);
+                    }
+                } catch (IOException e) {
+                    // The cached manifest is kept, the next load revalidates it again
+                } finally {
+                    try {
+                        revalidationUpstream.close();
+                    } catch (IOException e) {
+                        // Ignore
+                    }
+                    synchronized (ManifestCachingDataSource.class) {
+                        cached.revalidating = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Requests the manifest, conditionally when it is cached. The upstream must be closed by the
+     * caller.
+     *
+     * @return The manifest, or null if the cached one was not modified.
+     */
+    @Nullable
+    private static Entry fetch(DataSource upstream, DataSpec dataSpec, @Nullable Entry cached) throws IOException {
+        Map<String, String> headers = new HashMap<>(dataSpec.httpRequestHeaders);
+        if (cached != null && cached.etag != null) {
+            headers.put("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            headers.put("If-Modified-Since", cached.lastModified);
+        }
+        DataSpec request = dataSpec.buildUpon()
+                .setHttpRequestHeaders(headers)
+                .setFlags(dataSpec.flags | DataSpec.FLAG_ALLOW_GZIP)
+                .build();
+        try {
+            upstream.open(request);
+        } catch (HttpDataSource.InvalidResponseCodeException e) {
+            if (cached != null && e.responseCode == HTTP_NOT_MODIFIED) {
+                synchronized (ManifestCachingDataSource.class) {
+                    cached.validatedAtMs = SystemClock.elapsedRealtime();
+                }
+                return null;
+            }
+            throw e;
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = upstream.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+            data.write(buffer, 0, read);
+        }
+        return new Entry(data.toByteArray(), upstream.getResponseHeaders());
+    }
+
+    @Nullable
+    private static synchronized Entry getCached(String key) {
+        return cache.get(key);
+    }
+
+    private static synchronized boolean isFresh(Entry entry) {
+        return entry.isFresh();
+    }
+
+    private static synchronized void put(String key, Entry entry) {
+        Entry previous = cache.remove(key);
+        if (previous != null) {
+            cacheBytes -= previous.data.length;
+        }
+        // A live manifest is only worth keeping if it can be requested conditionally
+        if (entry.data.length > MAX_ENTRY_BYTES
+                || !entry.cacheable
+                || (entry.live && entry.etag == null && entry.lastModified == null)) {
+            return;
+        }
+        cache.put(key, entry);
+        cacheBytes += entry.data.length;
+        Iterator<Entry> leastRecentlyUsed = cache.values().iterator();
+        while (cacheBytes > MAX_CACHE_BYTES && leastRecentlyUsed.hasNext()) {
+            cacheBytes -= leastRecentlyUsed.next().data.length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private static boolean isManifestRequest(DataSpec dataSpec) {
+        String scheme = dataSpec.uri.getScheme();
+        String path = dataSpec.uri.getPath();
+        return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+                && path != null
+                && MediaNetworkStats.isManifestPath(path.toLowerCase(Locale.US))
+                && dataSpec.httpMethod == DataSpec.HTTP_METHOD_GET
+                && dataSpec.position == 0
+                && dataSpec.length == C.LENGTH_UNSET;
+    }
+
+    /**
+     * @return Whether the manifest is the one of a live source, which changes over time: an HLS
+     *     media playlist without an end, or a dynamic DASH or live SmoothStreaming manifest.
+     */
+    private static boolean isLive(byte[] data) {
+        String manifest = Util.fromUtf8Bytes(data);
+        if (manifest.startsWith("#EXTM3U")) {
+            return manifest.contains("#EXT-X-TARGETDURATION") && !manifest.contains("#EXT-X-ENDLIST");
+        }
+        return manifest.contains("type=\"dynamic\"") || manifest.contains("IsLive=\"TRUE\"");
+    }
+
+    private static Headers toHeaders(Map<String, List<String>> headers) {
+        Headers.Builder builder = new Headers.Builder();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() == null) {
+                // The status line
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.addUnsafeNonAscii(header.getKey(), value);
+            }
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+}
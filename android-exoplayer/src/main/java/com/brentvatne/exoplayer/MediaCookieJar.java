@@ -0,0 +1,281 @@
+package com.brentvatne.exoplayer;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.modules.network.ForwardingCookieHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+/**
+ * The cookies of the media client, read from the React Native cookie store, so the media requests
+ * send the cookies of the app, e.g. the signed cookies of a CDN.
+ *
+ * The React Native store is the WebKit {@code CookieManager}, which is slow to query. The cookies
+ * are kept in memory per scheme, host and directory, which segments usually share, so only the
+ * first request to a directory waits for the store. The snapshots are refreshed in the background
+ * when they get old, when a new source is set and when {@link #refresh(Runnable)} is called after the app
+ * changed the store, and are updated at once by the cookies of the media responses, which are
+ * written back to the store in the background.
+ *
+ * The store is read through the React context of the last player that loaded, see
+ * {@link #bind(ReactContext)}, so the previous context is released once the app reloads.
+ */
+final class MediaCookieJar implements CookieJar {
+
+    /** A snapshot older than this is served, and refreshed in the background. */
+    private static final long REFRESH_INTERVAL_MS = 60 * 1000;
+    private static final int MAX_SNAPSHOTS = 64;
+
+    private static final ExecutorService storeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "MediaCookieJar");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private static final class Snapshot {
+        final HttpUrl url;
+        List<Cookie> cookies;
+        long loadedAtMs;
+        boolean refreshing;
+
+        Snapshot(HttpUrl url, List<Cookie> cookies) {
+            this.url = url;
+            this.cookies = cookies;
+            loadedAtMs = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private ReactContext context;
+    private ForwardingCookieHandler cookieHandler;
+    /** Least recently used first. */
+    private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    MediaCookieJar(ReactContext context) {
+        this.context = context;
+        cookieHandler = new ForwardingCookieHandler(context);
+    }
+
+    /**
+     * Reads the store through the context, if it is not the one in use. The snapshots are dropped,
+     * the store may have changed with the context, e.g. after a reload of the app.
+     */
+    synchronized void bind(ReactContext context) {
+        if (context == this.context) {
+            return;
+        }
+        this.context = context;
+        cookieHandler = new ForwardingCookieHandler(context);
+        snapshots.clear();
+    }
+
+    @Override
+    public List<Cookie> loadForRequest(HttpUrl url) {
+        HttpUrl snapshotUrl = getSnapshotUrl(url);
+        String key = snapshotUrl.toString();
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = snapshots.get(key);
+            if (snapshot != null) {
+                if (!snapshot.refreshing
+                        && SystemClock.elapsedRealtime() - snapshot.loadedAtMs > REFRESH_INTERVAL_MS) {
+                    refreshInBackground(snapshot);
+                }
+                return snapshot.cookies;
+            }
+        }
+        // The first request to the directory waits for the store
+        List<Cookie> cookies = load(snapshotUrl);
+        synchronized (this) {
+            snapshots.put(key, new Snapshot(snapshotUrl, cookies));
+        }
+        return cookies;
+    }
+
+    @Override
+    public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+        final ForwardingCookieHandler cookieHandler;
+        synchronized (this) {
+            for (Snapshot snapshot : snapshots.values()) {
+                snapshot.cookies = merge(snapshot, cookies);
+            }
+            cookieHandler = this.cookieHandler;
+        }
+        final URI uri = url.uri();
+        final Map<String, List<String>> headers = new HashMap<>();
+        List<String> setCookies = new ArrayList<>(cookies.size());
+        for (Cookie cookie : cookies) {
+            setCookies.add(cookie.toString());
+        }
+        headers.put("Set-Cookie", setCookies);
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cookieHandler.put(uri, headers);
+                } catch (IOException e) {
+                    // The snapshots have the cookies, they are lost for the other clients of the app
+                }
+            }
+        });
+    }
+
+    /**
+     * Reloads every snapshot from the React Native cookie store in the background, the previous
+     * cookies are sent until then.
+     *
+     * @param onRefreshed Called on the store thread once every snapshot is reloaded, or null.
+     */
+    void refresh(@Nullable final Runnable onRefreshed) {
+        final List<Snapshot> refreshed;
+        synchronized (this) {
+            refreshed = new ArrayList<>(snapshots.values());
+            for (Snapshot snapshot : refreshed) {
+                snapshot.refreshing = true;
+            }
+        }
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Snapshot snapshot : refreshed) {
+                    reload(snapshot);
+                }
+                if (onRefreshed != null) {
+                    onRefreshed.run();
+                }
+            }
+        });
+    }
+
+    private void refreshInBackground(final Snapshot snapshot) {
+        snapshot.refreshing = true;
+        storeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                reload(snapshot);
+            }
+        });
+    }
+
+    private void reload(Snapshot snapshot) {
+        List<Cookie> cookies = load(snapshot.url);
+        synchronized (this) {
+            snapshot.cookies = cookies;
+            snapshot.loadedAtMs = SystemClock.elapsedRealtime();
+            snapshot.refreshing = false;
+        }
+    }
+
+    private List<Cookie> load(HttpUrl url) {
+        ForwardingCookieHandler cookieHandler;
+        synchronized (this) {
+            cookieHandler = this.cookieHandler;
+        }
+        Map<String, List<String>> headers;
+        try {
+            headers = cookieHandler.get(url.uri(), Collections.<String, List<String>>emptyMap());
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+        List<Cookie> cookies = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!"Cookie".equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                parseCookieHeader(url, value, cookies);
+            }
+        }
+        return Collections.unmodifiableList(cookies);
+    }
+
+    /**
+     * @return The cookies of the snapshot, with the ones of the response that apply to its URL
+     *     replacing the ones of the same name, and the expired ones removed.
+     */
+    private static List<Cookie> merge(Snapshot snapshot, List<Cookie> responseCookies) {
+        List<Cookie> cookies = null;
+        long now = System.currentTimeMillis();
+        for (Cookie responseCookie : responseCookies) {
+            if (!responseCookie.matches(snapshot.url)) {
+                continue;
+            }
+            if (cookies == null) {
+                cookies = new ArrayList<>(snapshot.cookies);
+            }
+            for (int i = cookies.size() - 1; i >= 0; i--) {
+                if (cookies.get(i).name().equals(responseCookie.name())) {
+                    cookies.remove(i);
+                }
+            }
+            if (responseCookie.expiresAt() > now) {
+                cookies.add(responseCookie);
+            }
+        }
+        return cookies == null ? snapshot.cookies : Collections.unmodifiableList(cookies);
+    }
+
+    /**
+     * Parses a {@code Cookie} request header, which only has the names and values. The cookies
+     * are host only, as the store already matched them to the URL.
+     */
+    private static void parseCookieHeader(HttpUrl url, String header, List<Cookie> cookies) {
+        for (String pair : header.split(";")) {
+            int separator = pair.indexOf('=');
+            String name = (separator == -1 ? pair : pair.substring(0, separator)).trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            String value = separator == -1 ? "" : pair.substring(separator + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            try {
+                cookies.add(new Cookie.Builder()
+                        .name(name)
+                        .value(value)
+                        .hostOnlyDomain(url.host())
+                        .build());
+            } catch (IllegalArgumentException e) {
+                // Not a valid cookie for OkHttp, e.g. a control character in the value
+            }
+        }
+    }
+
+    /**
+     * @return The URL of the directory of the URL, without the query, which its snapshot is
+     *     loaded for.
+     */
+    private static HttpUrl getSnapshotUrl(HttpUrl url) {
+        String path = url.encodedPath();
+        return url.newBuilder()
+                .encodedPath(path.substring(0, path.lastIndexOf('/') + 1))
+                .query(null)
+                .fragment(null)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.brentvatne.exoplayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Settings of the {@code OkHttpClient} that loads the media, see
+ * {@link ReactExoplayerConfig#getMediaHttpClientConfig()}.
+ *
+ * The media client is derived from the React Native client, so it keeps its cookies and
+ * interceptors, but has its own connection pool and dispatcher, so that media requests do not
+ * compete with the API calls of the app, and timeouts suited to media loading rather than to the
+ * React Native defaults, which never time out.
+ */
+public final class MediaHttpClientConfig {
+
+    /** The timeouts of the ExoPlayer {@code DefaultHttpDataSource}. */
+    public static final long DEFAULT_TIMEOUT_MS = 8000;
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 10;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_MS = 5 * 60 * 1000;
+
+    public static final MediaHttpClientConfig DEFAULT = new Builder().build();
+
+    public static final class Builder {
+        private long connectTimeoutMs = DEFAULT_TIMEOUT_MS;
+        private long readTimeoutMs = DEFAULT_TIMEOUT_MS;
+        private long writeTimeoutMs = DEFAULT_TIMEOUT_MS;
+        private int maxRequests = DEFAULT_MAX_REQUESTS;
+        private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+        private long keepAliveMs = DEFAULT_KEEP_ALIVE_MS;
+        private boolean http2Enabled = true;
+        private final List<String> warmUpUrls = new ArrayList<>();
+
+        public Builder setConnectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            return this;
+        }
+
+        public Builder setReadTimeoutMs(long readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        public Builder setWriteTimeoutMs(long writeTimeoutMs) {
+            this.writeTimeoutMs = writeTimeoutMs;
+            return this;
+        }
+
+        /**
+         * Limits the asynchronous requests of the dispatcher, e.g. the warm up requests. The player
+         * makes synchronous requests from its loader threads, which only the loaders limit.
+         */
+        public Builder setMaxRequests(int maxRequests, int maxRequestsPerHost) {
+            this.maxRequests = maxRequests;
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        public Builder setConnectionPool(int maxIdleConnections, long keepAliveMs) {
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMs = keepAliveMs;
+            return this;
+        }
+
+        /**
+         * @param http2Enabled Whether to negotiate HTTP/2 with the servers that support it, which
+         *     multiplexes the requests to a host on one connection. When disabled every parallel
+         *     request to a host opens its own HTTP/1.1 connection.
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            this.http2Enabled = http2Enabled;
+            return this;
+        }
+
+        /**
+         * Adds a URL to request when the client is created, typically the root of a CDN, so that
+         * the DNS resolution, the connection and the TLS handshake are done before the first
+         * source loads, and the TLS session can be resumed by later connections.
+         */
+        public Builder addWarmUpUrl(String url) {
+            warmUpUrls.add(url);
+            return this;
+        }
+
+        public MediaHttpClientConfig build() {
+            return new MediaHttpClientConfig(this);
+        }
+    }
+
+    public final long connectTimeoutMs;
+    public final long readTimeoutMs;
+    public final long writeTimeoutMs;
+    public final int maxRequests;
+    public final int maxRequestsPerHost;
+    public final int maxIdleConnections;
+    public final long keepAliveMs;
+    public final boolean http2Enabled;
+    public final List<String> warmUpUrls;
+
+    private MediaHttpClientConfig(Builder builder) {
+        connectTimeoutMs = builder.connectTimeoutMs;
+        readTimeoutMs = builder.readTimeoutMs;
+        writeTimeoutMs = builder.writeTimeoutMs;
+        maxRequests = builder.maxRequests;
+        maxRequestsPerHost = builder.maxRequestsPerHost;
+        maxIdleConnections = builder.maxIdleConnections;
+        keepAliveMs = builder.keepAliveMs;
+        http2Enabled = builder.http2Enabled;
+        warmUpUrls = Collections.unmodifiableList(new ArrayList<>(builder.warmUpUrls));
+    }
+}
@@ -0,0 +1,358 @@
+package com.brentvatne.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Collects the timings of the requests made by the media {@code OkHttpClient}.
+ *
+ * Requests are tagged by type from their method and URL, and their DNS, connection, TLS, time to
+ * first byte and throughput are aggregated in histograms per host and type, so a slow startup can
+ * be attributed to a phase of the network requests. The throughput is measured while the body is
+ * read, which is paced by the player, so it is a lower bound of the bandwidth.
+ *
+ * The client is shared by every player, so the statistics are too. Listeners are called from the
+ * OkHttp threads and snapshots are taken from the main thread, so all methods are synchronized.
+ */
+public final class MediaNetworkStats {
+
+    public static final String TYPE_MANIFEST = "manifest";
+    public static final String TYPE_SEGMENT = "segment";
+    public static final String TYPE_LICENSE = "license";
+    public static final String TYPE_SUBTITLE = "subtitle";
+
+    /** Upper bounds of the latency buckets, in milliseconds. The last bucket is unbounded. */
+    static final long[] LATENCY_BOUNDS_MS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+    /** Upper bounds of the throughput buckets, in kilobits per second. */
+    static final long[] THROUGHPUT_BOUNDS_KBPS = {250, 500, 1000, 2000, 4000, 8000, 16000, 32000};
+
+    /** Bodies smaller than this are dominated by the latency and do not sample the throughput. */
+    private static final long MIN_THROUGHPUT_BYTES = 16 * 1024;
+
+    static final class Histogram {
+        final long[] bounds;
+        final long[] counts;
+        long count;
+        long sum;
+        long max;
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds;
+            this.counts = new long[bounds.length + 1];
+        }
+
+        Histogram(Histogram other) {
+            bounds = other.bounds;
+            counts = other.counts.clone();
+            count = other.count;
+            sum = other.sum;
+            max = other.max;
+        }
+
+        void add(long value) {
+            int bucket = 0;
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    /** The statistics of the requests of one type to one host. */
+    static final class Entry {
+        final String host;
+        final String type;
+        long requests;
+        long failures;
+        long reusedConnections;
+        long bytes;
+        final Histogram dnsMs;
+        final Histogram connectMs;
+        final Histogram tlsMs;
+        final Histogram timeToFirstByteMs;
+        final Histogram durationMs;
+        final Histogram throughputKbps;
+
+        Entry(String host, String type) {
+            this.host = host;
+            this.type = type;
+            dnsMs = new Histogram(LATENCY_BOUNDS_MS);
+            connectMs = new Histogram(LATENCY_BOUNDS_MS);
+            tlsMs = new Histogram(LATENCY_BOUNDS_MS);
+            timeToFirstByteMs = new Histogram(LATENCY_BOUNDS_MS);
+            durationMs = new Histogram(LATENCY_BOUNDS_MS);
+            throughputKbps = new Histogram(THROUGHPUT_BOUNDS_KBPS);
+        }
+
+        Entry(Entry other) {
+            host = other.host;
+            type = other.type;
+            requests = other.requests;
+            failures = other.failures;
+            reusedConnections = other.reusedConnections;
+            bytes = other.bytes;
+            dnsMs = new Histogram(other.dnsMs);
+            connectMs = new Histogram(other.connectMs);
+            tlsMs = new Histogram(other.tlsMs);
+            timeToFirstByteMs = new Histogram(other.timeToFirstByteMs);
+            durationMs = new Histogram(other.durationMs);
+            throughputKbps = new Histogram(other.throughputKbps);
+        }
+    }
+
+    public static final EventListener.Factory EVENT_LISTENER_FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return new CallListener();
+        }
+    };
+
+    private static final Map<String, Entry> entries = new LinkedHashMap<>();
+    private static int version;
+
+    private MediaNetworkStats() {
+    }
+
+    /**
+     * @return A copy of the statistics, one entry per host and request type.
+     */
+    static synchronized List<Entry> snapshot() {
+        List<Entry> snapshot = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            snapshot.add(new Entry(entry));
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return A value that changes whenever a request is recorded, to only report changed statistics.
+     */
+    static synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The mean time to first byte of the requests of every type to the host, or -1 if none
+     *     was measured.
+     */
+    static synchronized long getMeanTimeToFirstByteMs(String host) {
+        long count = 0;
+        long sum = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.host.equals(host)) {
+                count += entry.timeToFirstByteMs.count;
+                sum += entry.timeToFirstByteMs.sum;
+            }
+        }
+        return count == 0 ? -1 : sum / count;
+    }
+
+    public static synchronized void reset() {
+        entries.clear();
+        version++;
+    }
+
+    static String getRequestType(Request request) {
+        // DRM licenses are the only media requests with a body
+        if ("POST".equals(request.method())) {
+            return TYPE_LICENSE;
+        }
+        String path = request.url().encodedPath().toLowerCase(Locale.US);
+        if (isManifestPath(path)) {
+            return TYPE_MANIFEST;
+        }
+        if (path.endsWith(".vtt") || path.endsWith(".webvtt") || path.endsWith(".srt")
+                || path.endsWith(".ttml") || path.endsWith(".dfxp")) {
+            return TYPE_SUBTITLE;
+        }
+        return TYPE_SEGMENT;
+    }
+
+    /**
+     * @param path The lower case path of a URL.
+     * @return Whether the URL is the one of an HLS playlist, a DASH MPD or a SmoothStreaming manifest.
+     */
+    static boolean isManifestPath(String path) {
+        return path.endsWith(".m3u8") || path.endsWith(".mpd") || path.endsWith("/manifest");
+    }
+
+    private static synchronized void record(CallListener call, boolean failed) {
+        if (call.host == null) {
+            return;
+        }
+        String key = call.type + ' ' + call.host;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(call.host, call.type);
+            entries.put(key, entry);
+        }
+        entry.requests++;
+        if (failed) {
+            entry.failures++;
+        }
+        if (call.dnsStartNs != 0 && call.dnsEndNs != 0) {
+            entry.dnsMs.add(toMs(call.dnsEndNs - call.dnsStartNs));
+        }
+        if (call.connectStartNs != 0 && call.connectEndNs != 0) {
+            entry.connectMs.add(toMs(call.connectEndNs - call.connectStartNs));
+        } else if (call.connectionAcquired) {
+            entry.reusedConnections++;
+        }
+        if (call.secureConnectStartNs != 0 && call.secureConnectEndNs != 0) {
+            entry.tlsMs.add(toMs(call.secureConnectEndNs - call.secureConnectStartNs));
+        }
+        if (call.requestStartNs != 0 && call.responseHeadersStartNs != 0) {
+            entry.timeToFirstByteMs.add(toMs(call.responseHeadersStartNs - call.requestStartNs));
+        }
+        entry.durationMs.add(toMs(call.endNs - call.startNs));
+        entry.bytes += call.bodyBytes;
+        if (call.bodyBytes >= MIN_THROUGHPUT_BYTES && call.bodyEndNs > call.bodyStartNs && call.bodyStartNs != 0) {
+            // Bits per millisecond are kilobits per second
+            entry.throughputKbps.add(call.bodyBytes * 8 * 1000000 / (call.bodyEndNs - call.bodyStartNs));
+        }
+        version++;
+    }
+
+    private static long toMs(long durationNs) {
+        return durationNs / 1000000;
+    }
+
+    /**
+     * Records the timestamps of one call. OkHttp creates a listener per call and calls it from one
+     * thread at a time, so its fields need no synchronization.
+     */
+    private static final class CallListener extends EventListener {
+        String host;
+        String type;
+        long startNs;
+        long dnsStartNs;
+        long dnsEndNs;
+        long connectStartNs;
+        long connectEndNs;
+        long secureConnectStartNs;
+        long secureConnectEndNs;
+        boolean connectionAcquired;
+        long requestStartNs;
+        long responseHeadersStartNs;
+        long bodyStartNs;
+        long bodyEndNs;
+        long bodyBytes;
+        long endNs;
+
+        @Override
+        public void callStart(Call call) {
+            Request request = call.request();
+            HttpUrl url = request.url();
+            host = url.host();
+            type = getRequestType(request);
+            startNs = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            dnsEndNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            // Only the last attempt counts when several routes are tried
+            connectStartNs = System.nanoTime();
+            secureConnectStartNs = 0;
+            secureConnectEndNs = 0;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, @Nullable Handshake handshake) {
+            secureConnectEndNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                               @Nullable Protocol protocol) {
+            connectEndNs = System.nanoTime();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionAcquired = true;
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            // Redirects and retries send the request again, the last one is measured
+            requestStartNs = System.nanoTime();
+            responseHeadersStartNs = 0;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseHeadersStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            // Rebuilt from the response, which is also right for requests after a redirect
+            Request request = response.request();
+            host = request.url().host();
+            type = getRequestType(request);
+        }
+
+        @Override
+        public void responseBodyStart(Call call) {
+            bodyStartNs = System.nanoTime();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            bodyEndNs = System.nanoTime();
+            bodyBytes = byteCount;
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            endNs = System.nanoTime();
+            record(this, false);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            endNs = System.nanoTime();
+            record(this, true);
+        }
+    }
+}
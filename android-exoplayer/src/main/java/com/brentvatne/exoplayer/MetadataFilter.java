@@ -0,0 +1,124 @@
+package com.brentvatne.exoplayer;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.metadata.Metadata;
+import com.google.android.exoplayer2.metadata.emsg.EventMessage;
+import com.google.android.exoplayer2.metadata.id3.Id3Frame;
+import com.google.android.exoplayer2.metadata.id3.TextInformationFrame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drops timed metadata that JS is not interested in before it crosses the bridge.
+ *
+ * ID3 frames are kept when their id is allowed and event messages when their scheme is allowed, a
+ * null set allows every entry of that kind. Entries seen again within the dedupe window are
+ * dropped, and at most {@code maxRate} events are emitted per second.
+ *
+ * The configuration is immutable, a new filter is created when it changes. The filtering state is
+ * not synchronized, {@link #filter} must always be called from the same thread.
+ */
+final class MetadataFilter {
+
+    private static final long RATE_WINDOW_MS = 1000;
+
+    @Nullable private final Set<String> schemes;
+    @Nullable private final Set<String> frameIds;
+    private final long dedupeWindowMs;
+    private final int maxRate;
+
+    /** Last time each entry was seen, oldest first. */
+    private final LinkedHashMap<String, Long> lastSeenMs = new LinkedHashMap<>();
+    private final ArrayDeque<Long> emittedAtMs = new ArrayDeque<>();
+
+    /**
+     * @param schemes The allowed event message schemes, or null to allow all of them.
+     * @param frameIds The allowed ID3 frame ids, or null to allow all of them.
+     * @param dedupeWindowMs Duration during which an identical entry is dropped, 0 to disable.
+     * @param maxRate Maximum number of events per second, 0 for no limit.
+     */
+    MetadataFilter(@Nullable Set<String> schemes, @Nullable Set<String> frameIds, long dedupeWindowMs, int maxRate) {
+        this.schemes = schemes;
+        this.frameIds = frameIds;
+        this.dedupeWindowMs = dedupeWindowMs;
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * @return The entries of {@code metadata} to emit, or null if there are none.
+     */
+    @Nullable
+    Metadata filter(Metadata metadata, long nowMs) {
+        pruneDedupeWindow(nowMs);
+        List<Metadata.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < metadata.length(); i++) {
+            Metadata.Entry entry = metadata.get(i);
+            String key = getKey(entry);
+            if (key == null) {
+                continue;
+            }
+            if (dedupeWindowMs > 0) {
+                Long seenAtMs = lastSeenMs.remove(key);
+                lastSeenMs.put(key, nowMs);
+                if (seenAtMs != null) {
+                    continue;
+                }
+            }
+            entries.add(entry);
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+        if (maxRate > 0) {
+            while (!emittedAtMs.isEmpty() && nowMs - emittedAtMs.peekFirst() >= RATE_WINDOW_MS) {
+                emittedAtMs.removeFirst();
+            }
+            if (emittedAtMs.size() >= maxRate) {
+                return null;
+            }
+            emittedAtMs.addLast(nowMs);
+        }
+        return new Metadata(entries);
+    }
+
+    /**
+     * @return The key identifying duplicates of an allowed entry, or null if the entry must be
+     *     dropped.
+     */
+    @Nullable
+    private String getKey(Metadata.Entry entry) {
+        if (entry instanceof Id3Frame) {
+            Id3Frame frame = (Id3Frame) entry;
+            if (frameIds != null && !frameIds.contains(frame.id)) {
+                return null;
+            }
+            String value = frame instanceof TextInformationFrame ? ((TextInformationFrame) frame).value : "";
+            return "id3:" + frame.id + ":" + value;
+        } else if (entry instanceof EventMessage) {
+            EventMessage eventMessage = (EventMessage) entry;
+            if (schemes != null && !schemes.contains(eventMessage.schemeIdUri)) {
+                return null;
+            }
+            return "emsg:" + eventMessage.schemeIdUri + ":" + eventMessage.value + ":" + eventMessage.id;
+        }
+        // Other entries are not emitted
+        return null;
+    }
+
+    private void pruneDedupeWindow(long nowMs) {
+        Iterator<Map.Entry<String, Long>> iterator = lastSeenMs.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (nowMs - iterator.next().getValue() < dedupeWindowMs) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+}
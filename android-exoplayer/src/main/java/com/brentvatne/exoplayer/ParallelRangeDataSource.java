@@ -0,0 +1,422 @@
+package com.brentvatne.exoplayer;
+
+import android.net.Uri;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Retention;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Loads large HTTP responses as parallel byte range requests, reassembled in order.
+ *
+ * On links with a high round trip time the throughput of a single connection is capped by its
+ * TCP window, and the track selection settles on a low bitrate. The first range is streamed as
+ * the player reads it while the following ones are fetched ahead on other connections of the pool,
+ * so the bandwidth estimate sees their combined throughput. Connections are only separate with
+ * HTTP/1.1, HTTP/2 servers multiplex the ranges on one connection.
+ *
+ * Manifests, requests that are not HTTP GET, that allow gzip, or that are known to be smaller
+ * than two ranges are passed through, as are the requests to hosts that ignored a range request.
+ */
+public final class ParallelRangeDataSource implements DataSource {
+
+    /** Never split requests. */
+    public static final int MODE_NEVER = 0;
+    /** Split requests when the round trip time and the bandwidth of the host justify it. */
+    public static final int MODE_AUTO = 1;
+    /** Split every request that can be. */
+    public static final int MODE_ALWAYS = 2;
+
+    @Retention(SOURCE)
+    @IntDef({
+            MODE_NEVER,
+            MODE_AUTO,
+            MODE_ALWAYS
+    })
+    public @interface Mode {
+    }
+
+    static final int RANGE_SIZE = 512 * 1024;
+    /** Ranges loaded at the same time, the one being read included. */
+    static final int MAX_PARALLEL_RANGES = 4;
+    /** Round trip time above which a single connection may not fill the link. */
+    private static final long MIN_ROUND_TRIP_TIME_MS = 100;
+    /**
+     * Bandwidth-delay product above which a connection gets close to the receive window of a
+     * typical mobile TCP stack, at which point its throughput stops growing with the bandwidth.
+     */
+    private static final long MIN_BANDWIDTH_DELAY_PRODUCT_BYTES = 32 * 1024;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ParallelRangeDataSource");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Hosts that answered a range request with the whole response. */
+    private static final Set<String> hostsWithoutRanges = Collections.synchronizedSet(new HashSet<String>());
+
+    public static final class Factory implements DataSource.Factory {
+        private final DataSource.Factory upstreamFactory;
+        private final BandwidthMeter bandwidthMeter;
+        @Mode private final int mode;
+
+        public Factory(DataSource.Factory upstreamFactory, BandwidthMeter bandwidthMeter, @Mode int mode) {
+            this.upstreamFactory = upstreamFactory;
+            this.bandwidthMeter = bandwidthMeter;
+            this.mode = mode;
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new ParallelRangeDataSource(upstreamFactory, bandwidthMeter, mode);
+        }
+    }
+
+    private final DataSource.Factory upstreamFactory;
+    private final BandwidthMeter bandwidthMeter;
+    @Mode private final int mode;
+    private final List<TransferListener> transferListeners = new ArrayList<>();
+    private final ArrayDeque<Future<byte[]>> pendingRanges = new ArrayDeque<>();
+
+    @Nullable private DataSpec dataSpec;
+    @Nullable private Uri uri;
+    private Map<String, List<String>> responseHeaders = Collections.emptyMap();
+    /** The upstream being read, the first range or the rest of a response that cannot be split. */
+    @Nullable private DataSource stream;
+    private long streamBytesRemaining;
+    @Nullable private byte[] range;
+    private int rangeOffset;
+    private long nextRangePosition;
+    private long endPosition;
+    /**
+     * Whether the rest of the response, after the first range, is to be read as one request, when
+     * the length of the resource is unknown.
+     */
+    private boolean tailPending;
+
+    ParallelRangeDataSource(DataSource.Factory upstreamFactory, BandwidthMeter bandwidthMeter, @Mode int mode) {
+        this.upstreamFactory = upstreamFactory;
+        this.bandwidthMeter = bandwidthMeter;
+        this.mode = mode;
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+        transferListeners.add(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+        this.dataSpec = dataSpec;
+        stream = createUpstream();
+        if (!shouldSplit(dataSpec)) {
+            streamBytesRemaining = C.LENGTH_UNSET;
+            long length = stream.open(dataSpec);
+            uri = stream.getUri();
+            responseHeaders = stream.getResponseHeaders();
+            return length;
+        }
+
+        long firstLength = dataSpec.length == C.LENGTH_UNSET ? RANGE_SIZE : Math.min(dataSpec.length, RANGE_SIZE);
+        // The first range is requested with a header rather than with the position and length of
+        // the spec, which the upstream would cap the response to, so a response that ignored the
+        // range can be read to its end
+        Map<String, String> headers = new HashMap<>(dataSpec.httpRequestHeaders);
+        headers.put("Range", "bytes=" + dataSpec.position + "-" + (dataSpec.position + firstLength - 1));
+        stream.open(dataSpec.buildUpon()
+                .setPosition(0)
+                .setLength(C.LENGTH_UNSET)
+                .setHttpRequestHeaders(headers)
+                .build());
+        uri = stream.getUri();
+        responseHeaders = stream.getResponseHeaders();
+
+        long[] contentRange = parseContentRange(getHeader(responseHeaders, "Content-Range"));
+        if (contentRange == null) {
+            // The server ignored the range and sends the whole resource, which is read as one
+            // response from now on
+            hostsWithoutRanges.add(dataSpec.uri.getHost());
+            skipFully(stream, dataSpec.position);
+            long resourceLength = parseLong(getHeader(responseHeaders, "Content-Length"));
+            if (dataSpec.length != C.LENGTH_UNSET) {
+                streamBytesRemaining = dataSpec.length;
+            } else if (resourceLength != C.LENGTH_UNSET) {
+                streamBytesRemaining = resourceLength - dataSpec.position;
+            } else {
+                streamBytesRemaining = C.LENGTH_UNSET;
+            }
+            endPosition = streamBytesRemaining == C.LENGTH_UNSET
+                    ? C.LENGTH_UNSET : dataSpec.position + streamBytesRemaining;
+            return streamBytesRemaining;
+        }
+
+        // The first range may be shorter than requested at the end of the resource
+        streamBytesRemaining = contentRange[1] - contentRange[0] + 1;
+        if (dataSpec.length != C.LENGTH_UNSET) {
+            endPosition = dataSpec.position + dataSpec.length;
+        } else {
+            endPosition = contentRange[2];
+        }
+        nextRangePosition = dataSpec.position + streamBytesRemaining;
+        if (endPosition != C.LENGTH_UNSET) {
+            scheduleRanges();
+        } else {
+            tailPending = true;
+        }
+        return endPosition == C.LENGTH_UNSET ? C.LENGTH_UNSET : endPosition - dataSpec.position;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            if (stream != null) {
+                if (streamBytesRemaining != 0) {
+                    int readLength = streamBytesRemaining == C.LENGTH_UNSET
+                            ? length : (int) Math.min(length, streamBytesRemaining);
+                    int read = stream.read(buffer, offset, readLength);
+                    if (read != C.RESULT_END_OF_INPUT) {
+                        if (streamBytesRemaining != C.LENGTH_UNSET) {
+                            streamBytesRemaining -= read;
+                        }
+                        return read;
+                    }
+                    if (streamBytesRemaining != C.LENGTH_UNSET) {
+                        throw new EOFException();
+                    }
+                }
+                // Closing a consumed response gives its connection back to the pool
+                DataSource consumed = stream;
+                stream = null;
+                consumed.close();
+            }
+            if (range != null && rangeOffset < range.length) {
+                int read = Math.min(length, range.length - rangeOffset);
+                System.arraycopy(range, rangeOffset, buffer, offset, read);
+                rangeOffset += read;
+                return read;
+            }
+            range = null;
+            Future<byte[]> nextRange = pendingRanges.pollFirst();
+            if (nextRange != null) {
+                range = awaitRange(nextRange);
+                rangeOffset = 0;
+                scheduleRanges();
+                continue;
+            }
+            if (tailPending) {
+                tailPending = false;
+                stream = createUpstream();
+                long tailLength = endPosition == C.LENGTH_UNSET ? C.LENGTH_UNSET : endPosition - nextRangePosition;
+                stream.open(dataSpec.subrange(nextRangePosition - dataSpec.position, tailLength));
+                streamBytesRemaining = C.LENGTH_UNSET;
+                continue;
+            }
+            return C.RESULT_END_OF_INPUT;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public Map<String, List<String>> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> pendingRange : pendingRanges) {
+            pendingRange.cancel(true);
+        }
+        pendingRanges.clear();
+        range = null;
+        tailPending = false;
+        uri = null;
+        responseHeaders = Collections.emptyMap();
+        if (stream != null) {
+            try {
+                stream.close();
+            } finally {
+                stream = null;
+            }
+        }
+    }
+
+    private boolean shouldSplit(DataSpec dataSpec) {
+        String scheme = dataSpec.uri.getScheme();
+        String host = dataSpec.uri.getHost();
+        String path = dataSpec.uri.getPath();
+        if (mode == MODE_NEVER
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))
+                || host == null
+                || dataSpec.httpMethod != DataSpec.HTTP_METHOD_GET
+                || dataSpec.isFlagSet(DataSpec.FLAG_ALLOW_GZIP)
+                || (path != null && MediaNetworkStats.isManifestPath(path.toLowerCase(Locale.US)))
+                || (dataSpec.length != C.LENGTH_UNSET && dataSpec.length < 2L * RANGE_SIZE)
+                || hostsWithoutRanges.contains(host)) {
+            return false;
+        }
+        if (mode == MODE_ALWAYS) {
+            return true;
+        }
+        // The time to first byte of earlier requests stands for the round trip time, the host is
+        // not split until it has been measured
+        long roundTripTimeMs = MediaNetworkStats.getMeanTimeToFirstByteMs(host);
+        long bandwidthDelayProductBytes = bandwidthMeter.getBitrateEstimate() * roundTripTimeMs / 8000;
+        return roundTripTimeMs >= MIN_ROUND_TRIP_TIME_MS
+                && bandwidthDelayProductBytes >= MIN_BANDWIDTH_DELAY_PRODUCT_BYTES;
+    }
+
+    /**
+     * Fetches ranges ahead of the one being read, up to {@link #MAX_PARALLEL_RANGES} at a time.
+     */
+    private void scheduleRanges() {
+        while (pendingRanges.size() < MAX_PARALLEL_RANGES - 1 && nextRangePosition < endPosition) {
+            int rangeLength = (int) Math.min(RANGE_SIZE, endPosition - nextRangePosition);
+            final DataSpec rangeSpec = dataSpec.subrange(nextRangePosition - dataSpec.position, rangeLength);
+            final DataSource upstream = createUpstream();
+            pendingRanges.addLast(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return readRange(upstream, rangeSpec);
+                }
+            }));
+            nextRangePosition += rangeLength;
+        }
+    }
+
+    private static byte[] readRange(DataSource upstream, DataSpec rangeSpec) throws IOException {
+        try {
+            upstream.open(rangeSpec);
+            byte[] data = new byte[(int) rangeSpec.length];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = upstream.read(data, offset, data.length - offset);
+                if (read == C.RESULT_END_OF_INPUT) {
+                    throw new EOFException();
+                }
+                offset += read;
+            }
+            return data;
+        } finally {
+            upstream.close();
+        }
+    }
+
+    private static byte[] awaitRange(Future<byte[]> range) throws IOException {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private DataSource createUpstream() {
+        DataSource upstream = upstreamFactory.createDataSource();
+        for (TransferListener transferListener : transferListeners) {
+            upstream.addTransferListener(transferListener);
+        }
+        return upstream;
+    }
+
+    /**
+     * Reads and drops the bytes of a response that start before the requested position.
+     */
+    private static void skipFully(DataSource upstream, long bytes) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (bytes > 0) {
+            int read = upstream.read(buffer, 0, (int) Math.min(buffer.length, bytes));
+            if (read == C.RESULT_END_OF_INPUT) {
+                throw new EOFException();
+            }
+            bytes -= read;
+        }
+    }
+
+    @Nullable
+    private static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The first and last byte of a {@code Content-Range} header and the length of the
+     *     resource, {@link C#LENGTH_UNSET} if unknown, or null if the header is missing or invalid.
+     */
+    @Nullable
+    static long[] parseContentRange(@Nullable String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash == -1 || slash < dash) {
+            return null;
+        }
+        long first = parseLong(contentRange.substring(6, dash));
+        long last = parseLong(contentRange.substring(dash + 1, slash));
+        if (first == C.LENGTH_UNSET || last < first) {
+            return null;
+        }
+        return new long[] {first, last, parseLong(contentRange.substring(slash + 1))};
+    }
+
+    private static long parseLong(@Nullable String value) {
+        if (value == null) {
+            return C.LENGTH_UNSET;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return C.LENGTH_UNSET;
+        }
+    }
+}
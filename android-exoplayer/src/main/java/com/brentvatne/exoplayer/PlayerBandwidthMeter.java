@@ -0,0 +1,98 @@
+package com.brentvatne.exoplayer;
+
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+
+/**
+ * Per player view on the shared {@link DefaultBandwidthMeter}.
+ *
+ * Transfers are forwarded to the shared meter, which keeps measuring the throughput of the whole
+ * link, and are attributed to this player in the {@link BandwidthArbiter}. The estimate handed to
+ * the adaptive track selection is the share of the link that this player gets among the players
+ * loading in parallel, so they do not each assume they own the full bandwidth.
+ */
+final class PlayerBandwidthMeter implements BandwidthMeter, TransferListener {
+
+    private final DefaultBandwidthMeter sharedMeter;
+
+    PlayerBandwidthMeter(DefaultBandwidthMeter sharedMeter) {
+        this.sharedMeter = sharedMeter;
+    }
+
+    void register() {
+        BandwidthArbiter.register(this);
+    }
+
+    void unregister() {
+        BandwidthArbiter.unregister(this);
+    }
+
+    void setPriority(int priority) {
+        BandwidthArbiter.setPriority(this, priority);
+    }
+
+    boolean shouldContinueLoading(long bufferedDurationUs, long playableBufferUs, boolean waitingToPlay) {
+        return BandwidthArbiter.shouldContinueLoading(this, bufferedDurationUs, playableBufferUs, waitingToPlay);
+    }
+
+    // BandwidthMeter implementation
+
+    @Override
+    public long getBitrateEstimate() {
+        return (long) (sharedMeter.getBitrateEstimate() * BandwidthArbiter.getShare(this));
+    }
+
+    @Nullable
+    @Override
+    public TransferListener getTransferListener() {
+        return this;
+    }
+
+    @Override
+    public void addEventListener(Handler eventHandler, EventListener eventListener) {
+        sharedMeter.addEventListener(eventHandler, eventListener);
+    }
+
+    @Override
+    public void removeEventListener(EventListener eventListener) {
+        sharedMeter.removeEventListener(eventListener);
+    }
+
+    // TransferListener implementation
+
+    @Override
+    public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        sharedMeter.onTransferInitializing(source, dataSpec, isNetwork);
+    }
+
+    @Override
+    public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        sharedMeter.onTransferStart(source, dataSpec, isNetwork);
+        if (isNetwork) {
+            BandwidthArbiter.onTransferStart(this);
+        }
+    }
+
+    @Override
+    public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork, int bytesTransferred) {
+        sharedMeter.onBytesTransferred(source, dataSpec, isNetwork, bytesTransferred);
+        if (isNetwork) {
+            BandwidthArbiter.onBytesTransferred(this);
+        }
+    }
+
+    @Override
+    public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        sharedMeter.onTransferEnd(source, dataSpec, isNetwork);
+        if (isNetwork) {
+            BandwidthArbiter.onTransferEnd(this);
+        }
+    }
+}
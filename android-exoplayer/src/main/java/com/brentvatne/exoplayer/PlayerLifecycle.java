@@ -0,0 +1,140 @@
+package com.brentvatne.exoplayer;
+
+import androidx.annotation.IntDef;
+
+import java.lang.annotation.Retention;
+import java.util.ArrayDeque;
+
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Tracks the setup of the player of a view, which is partly done off the main thread.
+ *
+ * Asynchronous steps capture the generation when they start and give up when it changed by the
+ * time they complete, i.e. when the player was released or another source was requested meanwhile.
+ * Actions that need the player, e.g. the modifiers and commands, are queued until it is built, and
+ * actions that need a prepared source until it is, then run in order, so no step ever blocks
+ * waiting for another one. An action that is already queued is not queued again, so the modifiers
+ * queue a runnable that applies their latest value.
+ *
+ * All methods must be called from the main thread.
+ */
+final class PlayerLifecycle {
+
+    /** There is no player. */
+    static final int STATE_RELEASED = 0;
+    /** The player is built, without a source. */
+    static final int STATE_CORE_READY = 1;
+    /** The source is being built, e.g. its DRM session manager on a background thread. */
+    static final int STATE_PREPARING = 2;
+    /** The player has been given the source and prepared. */
+    static final int STATE_PREPARED = 3;
+
+    @Retention(SOURCE)
+    @IntDef({
+            STATE_RELEASED,
+            STATE_CORE_READY,
+            STATE_PREPARING,
+            STATE_PREPARED
+    })
+    @interface State {
+    }
+
+    @State private int state = STATE_RELEASED;
+    private int generation;
+    private final ArrayDeque<Runnable> pendingActions = new ArrayDeque<>();
+    private final ArrayDeque<Runnable> pendingCoreActions = new ArrayDeque<>();
+
+    @State int getState() {
+        return state;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return Whether an asynchronous step started at this generation is still wanted.
+     */
+    boolean isCurrent(int generation) {
+        return this.generation == generation;
+    }
+
+    void onCoreReady() {
+        state = STATE_CORE_READY;
+    }
+
+    /**
+     * Runs the actions queued while there was no player. Called once the initialization of the
+     * player is done, rather than from {@link #onCoreReady()}, so that the actions never run in
+     * the middle of it.
+     */
+    void runCoreActions() {
+        // Actions may queue others, or release the player
+        while (state != STATE_RELEASED && !pendingCoreActions.isEmpty()) {
+            pendingCoreActions.removeFirst().run();
+        }
+    }
+
+    /**
+     * @return The generation of the preparation.
+     */
+    int onPreparing() {
+        state = STATE_PREPARING;
+        return generation;
+    }
+
+    /**
+     * Runs the actions queued while the source was not prepared.
+     */
+    void onPrepared() {
+        state = STATE_PREPARED;
+        // Actions may queue others, or change the state
+        while (state == STATE_PREPARED && !pendingActions.isEmpty()) {
+            pendingActions.removeFirst().run();
+        }
+    }
+
+    /**
+     * Drops the current source: its preparation, if in progress, is abandoned and the actions
+     * queued for it are dropped.
+     */
+    void onSourceChanged() {
+        generation++;
+        pendingActions.clear();
+        if (state != STATE_RELEASED) {
+            state = STATE_CORE_READY;
+        }
+    }
+
+    /**
+     * The actions queued for the player are kept, they run on the next one.
+     */
+    void onReleased() {
+        generation++;
+        pendingActions.clear();
+        state = STATE_RELEASED;
+    }
+
+    /**
+     * Runs the action now if the player is built, otherwise once it is.
+     */
+    void runWhenCoreReady(Runnable action) {
+        if (state != STATE_RELEASED && pendingCoreActions.isEmpty()) {
+            action.run();
+        } else if (!pendingCoreActions.contains(action)) {
+            pendingCoreActions.addLast(action);
+        }
+    }
+
+    /**
+     * Runs the action now if the source is prepared, otherwise once it is.
+     */
+    void runWhenPrepared(Runnable action) {
+        if (state == STATE_PREPARED) {
+            action.run();
+        } else if (!pendingActions.contains(action)) {
+            pendingActions.addLast(action);
+        }
+    }
+}
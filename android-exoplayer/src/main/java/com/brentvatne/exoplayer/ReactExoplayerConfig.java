@@ -13,4 +13,11 @@ public interface ReactExoplayerConfig {
     boolean getDisableDisconnectError();
 
     DefaultBandwidthMeter getBandwidthMeter();
+
+    /**
+     * Default so that existing implementations keep compiling.
+     */
+    default MediaHttpClientConfig getMediaHttpClientConfig() {
+        return MediaHttpClientConfig.DEFAULT;
+    }
 }
@@ -4,20 +4,30 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.ActivityManager;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.content.res.Configuration;
+import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.Display;
 import android.view.View;
+import android.view.View.OnLayoutChangeListener;
+import android.view.ViewTreeObserver;
 import android.view.Window;
+import android.view.WindowManager;
 import android.view.accessibility.CaptioningManager;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.util.DisplayMetrics;
 
 import com.brentvatne.react.R;
@@ -40,7 +50,9 @@ import com.google.android.exoplayer2.drm.MediaDrmCallbackException;
 import com.google.android.exoplayer2.drm.DrmSession.DrmSessionException;
 import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.Timeline;
@@ -59,9 +71,7 @@ import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.MetadataOutput;
 import com.google.android.exoplayer2.source.BehindLiveWindowException;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.source.MergingMediaSource;
 import com.google.android.exoplayer2.source.ProgressiveMediaSource;
-import com.google.android.exoplayer2.source.SingleSampleMediaSource;
 import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.source.dash.DashMediaSource;
@@ -69,6 +79,7 @@ import com.google.android.exoplayer2.source.dash.DefaultDashChunkSource;
 import com.google.android.exoplayer2.source.hls.HlsMediaSource;
 import com.google.android.exoplayer2.source.smoothstreaming.DefaultSsChunkSource;
 import com.google.android.exoplayer2.source.smoothstreaming.SsMediaSource;
+import com.google.android.exoplayer2.text.Cue;
 import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.MappingTrackSelector;
@@ -82,6 +93,10 @@ import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.LoadEventInfo;
+import com.google.android.exoplayer2.source.MediaLoadData;
+import com.google.android.exoplayer2.video.VideoListener;
 import com.google.android.exoplayer2.trackselection.TrackSelection;
 import com.google.android.exoplayer2.source.dash.DashUtil;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
@@ -90,9 +105,6 @@ import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
 import com.google.android.exoplayer2.source.dash.manifest.Representation;
 import com.google.android.exoplayer2.source.dash.manifest.Descriptor;
 
-import java.net.CookieHandler;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.UUID;
@@ -100,6 +112,7 @@ import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.List;
+import java.util.Set;
 import java.lang.Thread;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -117,7 +130,9 @@ class ReactExoplayerView extends FrameLayout implements
         BecomingNoisyListener,
         AudioManager.OnAudioFocusChangeListener,
         MetadataOutput,
-        DrmSessionEventListener {
+        DrmSessionEventListener,
+        VideoListener,
+        DecoderBudget.Client {
 
     public static final double DEFAULT_MAX_HEAP_ALLOCATION_PERCENT = 1;
     public static final double DEFAULT_MIN_BACK_BUFFER_MEMORY_RESERVE = 0;
@@ -125,17 +140,20 @@ class ReactExoplayerView extends FrameLayout implements
 
     private static final String TAG = "ReactExoplayerView";
 
-    private static final CookieManager DEFAULT_COOKIE_MANAGER;
     private static final int SHOW_PROGRESS = 1;
-
-    static {
-        DEFAULT_COOKIE_MANAGER = new CookieManager();
-        DEFAULT_COOKIE_MANAGER.setCookiePolicy(CookiePolicy.ACCEPT_ORIGINAL_SERVER);
-    }
+    private static final int REPORT_NETWORK_STATS = 2;
+    private static final int FLUSH_PENDING_SEEK = 3;
+    /** A seek that is not decoded after this long no longer holds back the following seek. */
+    private static final long MAX_SEEK_SETTLE_MS = 1000;
+    /** In place recoveries allowed before the player is rebuilt, in case the source cannot keep up. */
+    private static final int MAX_BEHIND_LIVE_WINDOW_RECOVERIES = 3;
 
     private final VideoEventEmitter eventEmitter;
     private final ReactExoplayerConfig config;
     private DefaultBandwidthMeter bandwidthMeter;
+    private final PlayerBandwidthMeter playerBandwidthMeter;
+    /** Whether the player is buffering while it should play, read by the load control thread. */
+    private volatile boolean waitingToPlay = false;
     private PlayerControlView playerControlView;
     private View playPauseControlContainer;
     private Player.EventListener eventListener;
@@ -146,6 +164,58 @@ class ReactExoplayerView extends FrameLayout implements
     private SimpleExoPlayer player;
     private DefaultTrackSelector trackSelector;
     private boolean playerNeedsSource;
+    private final PlayerLifecycle lifecycle = new PlayerLifecycle();
+    // Apply the latest value of a modifier, queued by the lifecycle until the player can take it
+    private final Runnable applyPaused = new Runnable() {
+        @Override
+        public void run() {
+            if (isPaused) {
+                pausePlayback();
+            } else {
+                startPlayback();
+            }
+        }
+    };
+    private final Runnable applyVolume = new Runnable() {
+        @Override
+        public void run() {
+            player.setVolume(audioVolume);
+        }
+    };
+    private final Runnable applyRate = new Runnable() {
+        @Override
+        public void run() {
+            player.setPlaybackParameters(new PlaybackParameters(rate, 1f));
+        }
+    };
+    private final Runnable applySeekParameters = new Runnable() {
+        @Override
+        public void run() {
+            player.setSeekParameters(seekParameters);
+        }
+    };
+    private final Runnable applySelectedVideoTrack = new Runnable() {
+        @Override
+        public void run() {
+            setSelectedTrack(C.TRACK_TYPE_VIDEO, videoTrackType, videoTrackValue);
+        }
+    };
+    private final Runnable applySelectedAudioTrack = new Runnable() {
+        @Override
+        public void run() {
+            setSelectedTrack(C.TRACK_TYPE_AUDIO, audioTrackType, audioTrackValue);
+        }
+    };
+    private final Runnable applySelectedTextTrack = new Runnable() {
+        @Override
+        public void run() {
+            setSelectedTrack(C.TRACK_TYPE_TEXT, textTrackType, textTrackValue);
+        }
+    };
+    /** Changes made by the props of the current update transaction, applied by {@link #commitPropChanges}. */
+    private boolean sourceChanged;
+    private boolean sourceReloadRequired;
+    private boolean playerRebuildRequired;
 
     private int resumeWindow;
     private long resumePosition;
@@ -160,11 +230,78 @@ class ReactExoplayerView extends FrameLayout implements
     private float audioVolume = 1f;
     private int minLoadRetryCount = 3;
     private int maxBitRate = 0;
+    // Live configuration of the media item, unset values use the defaults of the manifest or ExoPlayer
+    private long liveTargetOffsetMs = C.TIME_UNSET;
+    private long liveMinOffsetMs = C.TIME_UNSET;
+    private long liveMaxOffsetMs = C.TIME_UNSET;
+    private float liveMinPlaybackSpeed = C.RATE_UNSET;
+    private float liveMaxPlaybackSpeed = C.RATE_UNSET;
+    /** The target of the seek that the player did not process yet. */
     private long seekTime = C.TIME_UNSET;
+    /** Whether the last seek was processed and its position is being loaded and decoded. */
+    private boolean seekSettling = false;
+    private long pendingSeekTime = C.TIME_UNSET;
+    /** Callbacks of the seek commands waiting for the seeks to settle. */
+    private final List<SeekCallback> seekCallbacks = new ArrayList<>();
+    /** Callbacks of the track selection commands waiting for the tracks of the source. */
+    private final List<TrackSelectionCallback> trackSelectionCallbacks = new ArrayList<>();
+    private SeekParameters seekParameters = SeekParameters.DEFAULT;
     private boolean hasDrmFailed = false;
+    private int behindLiveWindowRecoveries = 0;
     private boolean isUsingContentResolution = false;
     private boolean selectTrackWhenReady = false;
     private boolean limitMaxResolution = false;
+    private boolean limitResolutionToView = false;
+    /** Size in pixels of the area the video is rendered in, 0 until the view is laid out. */
+    private int viewportWidth = 0;
+    private int viewportHeight = 0;
+    /** Shortest side of the display showing this view, 0 until it is known. Read from background threads. */
+    private volatile int screenShortestSide = 0;
+    private DisplayManager.DisplayListener displayListener;
+    private boolean hasVideoDecoder = false;
+    private long lastInteractionTimeMs = 0;
+    private final Rect visibleRect = new Rect();
+    private int playerPriority = -1;
+    /** Scrolling a list or moving the view does not change its visibility, but its priority. */
+    private final ViewTreeObserver.OnScrollChangedListener scrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updatePlayerPriorityIfChanged();
+        }
+    };
+    private final ViewTreeObserver.OnGlobalLayoutListener globalLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            updatePlayerPriorityIfChanged();
+        }
+    };
+    private final ThumbnailProvider thumbnailProvider = new ThumbnailProvider();
+    private SideloadedTextTracks sideloadedTextTracks;
+    private MetadataFilter metadataFilter = new MetadataFilter(null, null, 0, 0);
+    private final ExecutorService metadataExecutor = Executors.newSingleThreadExecutor();
+    private final StartupTracer startupTracer = new StartupTracer();
+    /** Counts the loads of the startup, they are only recorded while the startup is traced. */
+    private final AnalyticsListener startupLoadCounter = new AnalyticsListener() {
+        @Override
+        public void onLoadStarted(AnalyticsListener.EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData) {
+            startupTracer.count(StartupTracer.COUNTER_REQUESTS, 1);
+            if (mediaLoadData.dataType == C.DATA_TYPE_MANIFEST) {
+                startupTracer.count(StartupTracer.COUNTER_MANIFEST_REQUESTS, 1);
+            }
+        }
+
+        @Override
+        public void onLoadCompleted(AnalyticsListener.EventTime eventTime, LoadEventInfo loadEventInfo, MediaLoadData mediaLoadData) {
+            startupTracer.count(StartupTracer.COUNTER_BYTES_LOADED, loadEventInfo.bytesLoaded);
+        }
+    };
+    private boolean exportChromeTrace = false;
+    private final SparseArray<TrackCatalog> trackCatalogs = new SparseArray<>();
+    /** The track groups of the period the {@link #trackCatalogs} were built for. */
+    private TrackGroupArray catalogedTrackGroups;
+    private ReadableArray thumbnails;
+    private ImageView thumbnailPreviewView;
+    private long thumbnailPreviewPositionMs = C.TIME_UNSET;
 
     private int minBufferMs = DefaultLoadControl.DEFAULT_MIN_BUFFER_MS;
     private int maxBufferMs = DefaultLoadControl.DEFAULT_MAX_BUFFER_MS;
@@ -198,6 +335,9 @@ class ReactExoplayerView extends FrameLayout implements
     private boolean playInBackground = false;
     private Map<String, String> requestHeaders;
     private boolean mReportBandwidth = false;
+    private long networkStatsInterval = 0;
+    @ParallelRangeDataSource.Mode private int parallelRangeMode = ParallelRangeDataSource.MODE_AUTO;
+    private int reportedNetworkStatsVersion = -1;
     private UUID drmUUID = null;
     private String drmLicenseUrl = null;
     private String[] drmLicenseHeader = null;
@@ -220,11 +360,32 @@ class ReactExoplayerView extends FrameLayout implements
                             ) {
                         long pos = player.getCurrentPosition();
                         long bufferedDuration = player.getBufferedPercentage() * player.getDuration() / 100;
-                        eventEmitter.progressChanged(pos, bufferedDuration, player.getDuration(), getPositionInFirstPeriodMsForCurrentWindow(pos));
+                        long liveOffset = player.isCurrentWindowLive() ? player.getCurrentLiveOffset() : C.TIME_UNSET;
+                        eventEmitter.progressChanged(pos, bufferedDuration, player.getDuration(), getPositionInFirstPeriodMsForCurrentWindow(pos), liveOffset);
                         msg = obtainMessage(SHOW_PROGRESS);
                         sendMessageDelayed(msg, Math.round(mProgressUpdateInterval));
                     }
                     break;
+                case REPORT_NETWORK_STATS:
+                    if (player != null && networkStatsInterval > 0) {
+                        int version = MediaNetworkStats.getVersion();
+                        if (version != reportedNetworkStatsVersion) {
+                            reportedNetworkStatsVersion = version;
+                            eventEmitter.networkStats(MediaNetworkStats.snapshot());
+                        }
+                        sendEmptyMessageDelayed(REPORT_NETWORK_STATS, networkStatsInterval);
+                    }
+                    break;
+                case FLUSH_PENDING_SEEK:
+                    // The settling seek is stalled, e.g. by the network, do not hold back the latest
+                    // target behind it
+                    if (player != null && seekSettling && pendingSeekTime != C.TIME_UNSET) {
+                        seekSettling = false;
+                        long positionMs = pendingSeekTime;
+                        pendingSeekTime = C.TIME_UNSET;
+                        performSeek(positionMs);
+                    }
+                    break;
             }
         }
     };
@@ -243,6 +404,10 @@ class ReactExoplayerView extends FrameLayout implements
         this.eventEmitter = new VideoEventEmitter(context);
         this.config = config;
         this.bandwidthMeter = config.getBandwidthMeter();
+        this.playerBandwidthMeter = new PlayerBandwidthMeter(config.getBandwidthMeter());
+        // Built now so that the warm up connections are opened before the first source loads
+        DataSourceUtil.setMediaHttpClientConfig(config.getMediaHttpClientConfig());
+        DataSourceUtil.getMediaHttpClient(context);
 
         createViews();
 
@@ -260,10 +425,7 @@ class ReactExoplayerView extends FrameLayout implements
 
     private void createViews() {
         clearResumePosition();
-        mediaDataSourceFactory = buildDataSourceFactory(true);
-        if (CookieHandler.getDefault() != DEFAULT_COOKIE_MANAGER) {
-            CookieHandler.setDefault(DEFAULT_COOKIE_MANAGER);
-        }
+        mediaDataSourceFactory = buildDataSourceFactory();
 
         LayoutParams layoutParams = new LayoutParams(
                 LayoutParams.MATCH_PARENT,
@@ -272,6 +434,25 @@ class ReactExoplayerView extends FrameLayout implements
         exoPlayerView.setLayoutParams(layoutParams);
 
         addView(exoPlayerView, 0, layoutParams);
+        exoPlayerView.addVideoLayoutChangeListener(new OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                int width = right - left;
+                int height = bottom - top;
+                if (width != viewportWidth || height != viewportHeight) {
+                    viewportWidth = width;
+                    viewportHeight = height;
+                    applyViewportConstraints();
+                }
+            }
+        });
+        sideloadedTextTracks = new SideloadedTextTracks(new SideloadedTextTracks.Output() {
+            @Override
+            public void onCues(List<Cue> cues) {
+                exoPlayerView.setSideloadedCues(cues);
+            }
+        });
 
         mainHandler = new Handler();
     }
@@ -279,16 +460,43 @@ class ReactExoplayerView extends FrameLayout implements
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        registerDisplayListener();
+        getViewTreeObserver().addOnScrollChangedListener(scrollChangedListener);
+        getViewTreeObserver().addOnGlobalLayoutListener(globalLayoutListener);
+        // The view may have moved to another display
+        updateScreenShortestSide();
         initializePlayer();
     }
 
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        updateScreenShortestSide();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        unregisterDisplayListener();
+        getViewTreeObserver().removeOnScrollChangedListener(scrollChangedListener);
+        getViewTreeObserver().removeOnGlobalLayoutListener(globalLayoutListener);
         /* We want to be able to continue playing audio when switching tabs.
          * Leave this here in case it causes issues.
          */
         // stopPlayback();
+        updatePlayerPriority();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updatePlayerPriority();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updatePlayerPriority();
     }
 
     // LifecycleEventListener implementation
@@ -321,6 +529,9 @@ class ReactExoplayerView extends FrameLayout implements
 
     public void cleanUpResources() {
         stopPlayback();
+        thumbnailProvider.release();
+        sideloadedTextTracks.release();
+        metadataExecutor.shutdownNow();
     }
 
     //BandwidthMeter.EventListener implementation
@@ -334,13 +545,106 @@ class ReactExoplayerView extends FrameLayout implements
                 int width = videoFormat != null ? videoFormat.width : 0;
                 int height = videoFormat != null ? videoFormat.height : 0;
                 String trackId = videoFormat != null ? videoFormat.id : "-1";
-                eventEmitter.bandwidthReport(bitrate, height, width, trackId);
+                // Report the share of the bandwidth used by this player rather than the whole link
+                eventEmitter.bandwidthReport(playerBandwidthMeter.getBitrateEstimate(), height, width, trackId);
             }
         }
     }
 
+    // DecoderBudget.Client implementation
+
+    @Override
+    public int getDecoderPriority() {
+        int priority = 0;
+        if (isShown() && getGlobalVisibleRect(visibleRect)) {
+            priority += 2;
+        }
+        if (player != null && player.isPlaying()) {
+            priority += 1;
+        }
+        return priority;
+    }
+
+    @Override
+    public long getLastInteractionTimeMs() {
+        return lastInteractionTimeMs;
+    }
+
+    @Override
+    public boolean needsVideoDecoder() {
+        if (player == null || trackSelector == null) {
+            return true;
+        }
+        MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
+        if (info == null) {
+            // The tracks are unknown until the source is prepared
+            return true;
+        }
+        int rendererIndex = getTrackRendererIndex(C.TRACK_TYPE_VIDEO);
+        return rendererIndex != C.INDEX_UNSET && info.getTrackGroups(rendererIndex).length > 0;
+    }
+
+    @Override
+    public void onDecoderGranted() {
+        hasVideoDecoder = true;
+        applyDecoderGrant();
+    }
+
+    @Override
+    public void onDecoderRevoked() {
+        hasVideoDecoder = false;
+        applyDecoderGrant();
+    }
+
     // Internal methods
 
+    /**
+     * Enables or disables the video renderer depending on whether this player currently holds a
+     * video decoder in the {@link DecoderBudget}. Disabling the renderer releases its codec.
+     */
+    private void applyDecoderGrant() {
+        if (player == null || trackSelector == null) {
+            return;
+        }
+        int rendererIndex = getTrackRendererIndex(C.TRACK_TYPE_VIDEO);
+        if (rendererIndex == C.INDEX_UNSET) {
+            return;
+        }
+        boolean disabled = !hasVideoDecoder || "disabled".equals(videoTrackType);
+        trackSelector.setParameters(trackSelector.buildUponParameters()
+                .setRendererDisabled(rendererIndex, disabled));
+    }
+
+    /**
+     * Called on the gestures on the controls and on the imperative commands, not on prop changes,
+     * which are renders rather than interactions.
+     */
+    void onUserInteraction() {
+        lastInteractionTimeMs = SystemClock.elapsedRealtime();
+        updatePlayerPriority();
+    }
+
+    /**
+     * Propagates the current priority of this player to the decoder and bandwidth arbitration.
+     */
+    private void updatePlayerPriority() {
+        playerPriority = getDecoderPriority();
+        if (playerBandwidthMeter != null) {
+            playerBandwidthMeter.setPriority(playerPriority);
+        }
+        DecoderBudget.invalidate();
+    }
+
+    /**
+     * Like {@link #updatePlayerPriority()}, for the frequent callbacks of scrolling and layout,
+     * which usually do not change the priority.
+     */
+    private void updatePlayerPriorityIfChanged() {
+        if (getDecoderPriority() != playerPriority) {
+            updatePlayerPriority();
+        }
+    }
+
     /**
      * Toggling the visibility of the player control view
      */
@@ -374,6 +678,7 @@ class ReactExoplayerView extends FrameLayout implements
         exoPlayerView.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
+                onUserInteraction();
                 togglePlayerControlVisibility();
             }
         });
@@ -383,6 +688,7 @@ class ReactExoplayerView extends FrameLayout implements
         playButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                onUserInteraction();
                 if (player != null && player.getPlaybackState() == Player.STATE_ENDED) {
                     player.seekTo(0);
                 }
@@ -395,6 +701,7 @@ class ReactExoplayerView extends FrameLayout implements
         pauseButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                onUserInteraction();
                 setPausedModifier(true);
             }
         });
@@ -481,6 +788,12 @@ class ReactExoplayerView extends FrameLayout implements
                 runtime.gc();
                 return false;
             }
+            long playableBufferUs = (long) Math.max(ReactExoplayerView.this.bufferForPlaybackMs,
+                    ReactExoplayerView.this.bufferForPlaybackAfterRebufferMs) * 1000;
+            if (!playerBandwidthMeter.shouldContinueLoading(bufferedDurationUs, playableBufferUs, waitingToPlay)) {
+                // A higher priority player is starving so we leave it the network
+                return false;
+            }
             return super.shouldContinueLoading(playbackPositionUs, bufferedDurationUs, playbackSpeed);
         }
     }
@@ -524,65 +837,83 @@ class ReactExoplayerView extends FrameLayout implements
 
     private void initializePlayer() {
         ReactExoplayerView self = this;
-        Activity activity = themedReactContext.getCurrentActivity();
-        // This ensures all props have been settled, to avoid async racing conditions.
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (player == null) {
-                        // Initialize core configuration and listeners
-                        initializePlayerCore(self);
-                    }
-                    if (playerNeedsSource && srcUri != null) {
-                        exoPlayerView.invalidateAspectRatio();
-                        // DRM session manager creation must be done on a different thread to prevent crashes so we start a new thread
-                        ExecutorService es = Executors.newSingleThreadExecutor();
-                        es.execute(new Runnable() {
-                            ExecutorService parentEs = es;
-                            @Override
+        if (lifecycle.getState() == PlayerLifecycle.STATE_PREPARING) {
+            // The source is prepared as soon as its DRM session manager is built
+            return;
+        }
+        if (srcUri != null && (player == null || playerNeedsSource)) {
+            startupTracer.start();
+        }
+        try {
+            if (player == null) {
+                // Initialize core configuration and listeners
+                startupTracer.begin(StartupTracer.PHASE_PLAYER_CORE);
+                initializePlayerCore(self);
+                startupTracer.end(StartupTracer.PHASE_PLAYER_CORE);
+            }
+            if (playerNeedsSource && srcUri != null) {
+                exoPlayerView.invalidateAspectRatio();
+                final int generation = lifecycle.onPreparing();
+                // DRM session manager creation must be done on a different thread to prevent crashes so we start a new thread
+                ExecutorService es = Executors.newSingleThreadExecutor();
+                es.execute(new Runnable() {
+                    ExecutorService parentEs = es;
+                    @Override
+                    public void run() {
+                        // DRM initialization must run on a different thread
+                        startupTracer.begin(StartupTracer.PHASE_DRM);
+                        DrmSessionManager drmSessionManager = initializePlayerDrm(self);
+                        startupTracer.end(StartupTracer.PHASE_DRM);
+
+                        // Source initialization must run on the main thread
+                        startupTracer.begin(StartupTracer.PHASE_MAIN_THREAD_HOP);
+                        mainHandler.post(new Runnable() {
+                            ExecutorService es = parentEs;
                             public void run() {
-                                // DRM initialization must run on a different thread
-                                DrmSessionManager drmSessionManager = initializePlayerDrm(self);
+                                es.shutdown();
+                                if (!lifecycle.isCurrent(generation)) {
+                                    // The player was released or another source was requested meanwhile
+                                    return;
+                                }
+                                startupTracer.end(StartupTracer.PHASE_MAIN_THREAD_HOP);
                                 if (drmSessionManager == null && self.drmUUID != null) {
                                     // Failed to intialize DRM session manager - cannot continue
+                                    startupTracer.cancel();
+                                    lifecycle.onCoreReady();
                                     Log.e("ExoPlayer Exception", "Failed to initialize DRM Session Manager Framework!");
                                     eventEmitter.error("Failed to initialize DRM Session Manager Framework!", new Exception("DRM Session Manager Framework failure!"), "3003");
                                     return;
                                 }
-
-                                // Initialize handler to run on the main thread
-                                activity.runOnUiThread(new Runnable() {
-                                    ExecutorService es = parentEs;
-                                    public void run() {
-                                        try {
-                                            // Source initialization must run on the main thread
-                                            initializePlayerSource(self, drmSessionManager);
-                                        } catch (Exception ex) {
-                                            self.playerNeedsSource = true;
-                                            Log.e("ExoPlayer Exception", "Failed to initialize Player!");
-                                            Log.e("ExoPlayer Exception", ex.toString());
-                                            self.eventEmitter.error(ex.toString(), ex, "1001");
-                                        }
-                                        es.shutdown();
-                                    }
-                                });
+                                try {
+                                    initializePlayerSource(self, drmSessionManager);
+                                } catch (Exception ex) {
+                                    startupTracer.cancel();
+                                    lifecycle.onCoreReady();
+                                    self.playerNeedsSource = true;
+                                    Log.e("ExoPlayer Exception", "Failed to initialize Player!");
+                                    Log.e("ExoPlayer Exception", ex.toString());
+                                    self.eventEmitter.error(ex.toString(), ex, "1001");
+                                }
                             }
                         });
-                    } else if (srcUri != null) {
-                        initializePlayerSource(self, null);
                     }
-                    
-                
-                } catch (Exception ex) {
-                    self.playerNeedsSource = true;
-                    Log.e("ExoPlayer Exception", "Failed to initialize Player!");
-                    Log.e("ExoPlayer Exception", ex.toString());
-                    eventEmitter.error(ex.toString(), ex, "1001");
-                }
+                });
+            } else if (srcUri != null && (player.getPlaybackState() == Player.STATE_IDLE
+                    || player.getPlaybackState() == Player.STATE_ENDED)) {
+                // Only restart a source that stopped, setting it again would reload it
+                initializePlayerSource(self, null);
             }
-        }, 1);
-        
+        } catch (Exception ex) {
+            startupTracer.cancel();
+            if (player != null) {
+                lifecycle.onCoreReady();
+            }
+            self.playerNeedsSource = true;
+            Log.e("ExoPlayer Exception", "Failed to initialize Player!");
+            Log.e("ExoPlayer Exception", ex.toString());
+            eventEmitter.error(ex.toString(), ex, "1001");
+        }
+        lifecycle.runCoreActions();
     }
 
     private void initializePlayerCore(ReactExoplayerView self) {
@@ -590,6 +921,7 @@ class ReactExoplayerView extends FrameLayout implements
         self.trackSelector = new DefaultTrackSelector(videoTrackSelectionFactory);
         self.trackSelector.setParameters(trackSelector.buildUponParameters()
                 .setMaxVideoBitrate(maxBitRate == 0 ? Integer.MAX_VALUE : maxBitRate));
+        applyViewportConstraints();
 
         Runtime runtime = Runtime.getRuntime();
         long usedMemory = runtime.totalMemory() - runtime.freeMemory();
@@ -617,18 +949,28 @@ class ReactExoplayerView extends FrameLayout implements
                         .setExtensionRendererMode(DefaultRenderersFactory.EXTENSION_RENDERER_MODE_OFF);
         player = new SimpleExoPlayer.Builder(getContext(), renderersFactory)
                     .setTrackSelector​(self.trackSelector)
-                    .setBandwidthMeter(bandwidthMeter)
+                    .setBandwidthMeter(playerBandwidthMeter)
                     .setLoadControl(loadControl)
                     .build();
         player.addListener(self);
         player.addMetadataOutput(self);
+        player.addVideoListener(self);
+        player.addAnalyticsListener(startupLoadCounter);
+        startNetworkStatsReports();
+        playerBandwidthMeter.register();
+        updatePlayerPriority();
+        DecoderBudget.register(self);
+        applyDecoderGrant();
         exoPlayerView.setPlayer(player);
+        sideloadedTextTracks.setPlayer(player);
         audioBecomingNoisyReceiver.setListener(self);
         setPlayWhenReady(!isPaused);
         playerNeedsSource = true;
 
         PlaybackParameters params = new PlaybackParameters(rate, 1f);
         player.setPlaybackParameters(params);
+        player.setSeekParameters(seekParameters);
+        lifecycle.onCoreReady();
 
     }
 
@@ -650,34 +992,16 @@ class ReactExoplayerView extends FrameLayout implements
     }
 
     private void initializePlayerSource(ReactExoplayerView self, DrmSessionManager drmSessionManager) {
-        ArrayList<MediaSource> mediaSourceList = buildTextSources();
-        MediaSource videoSource = buildMediaSource(self.srcUri, self.extension, drmSessionManager);
-        MediaSource mediaSource;
-        if (mediaSourceList.size() == 0) {
-            mediaSource = videoSource;
-        } else {
-            mediaSourceList.add(0, videoSource);
-            MediaSource[] textSourceArray = mediaSourceList.toArray(
-                    new MediaSource[mediaSourceList.size()]
-            );
-            mediaSource = new MergingMediaSource(textSourceArray);
-        }
-
-        // wait for player to be set
-        while (player == null) {
-            try {
-                wait();
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                Log.e("ExoPlayer Exception", ex.toString());
-            }
-        }
+        startupTracer.begin(StartupTracer.PHASE_SOURCE);
+        MediaSource mediaSource = buildMediaSource(srcUri, extension, drmSessionManager);
 
         boolean haveResumePosition = resumeWindow != C.INDEX_UNSET;
         if (haveResumePosition) {
             player.seekTo(resumeWindow, resumePosition);
         }
-        player.prepare(mediaSource, !haveResumePosition, false);
+        player.setMediaSource(mediaSource, !haveResumePosition);
+        player.prepare();
+        beginPrepareTrace();
         playerNeedsSource = false;
 
         reLayout(exoPlayerView);
@@ -685,6 +1009,60 @@ class ReactExoplayerView extends FrameLayout implements
         loadVideoStarted = true;
 
         finishPlayerInitialization();
+        startupTracer.end(StartupTracer.PHASE_SOURCE);
+        lifecycle.onPrepared();
+    }
+
+    private void beginPrepareTrace() {
+        startupTracer.begin(StartupTracer.PHASE_PREPARE);
+        startupTracer.begin(StartupTracer.PHASE_FIRST_FRAME);
+    }
+
+    /**
+     * Emits the startup trace once the player is ready and has rendered its first frame, or only
+     * once it is ready when there is no video to render.
+     */
+    private void finishStartupTraceIfComplete() {
+        if (!startupTracer.isActive() || !startupTracer.hasEnded(StartupTracer.PHASE_PREPARE)) {
+            return;
+        }
+        if (!startupTracer.hasEnded(StartupTracer.PHASE_FIRST_FRAME)
+                && player != null && player.getVideoFormat() != null) {
+            return;
+        }
+        StartupTracer.Trace trace = startupTracer.finish();
+        if (trace != null) {
+            eventEmitter.startupTrace(trace, exportChromeTrace ? trace.toChromeTraceJson() : null);
+        }
+    }
+
+    /**
+     * Replaces the media source of the running player, skipping the release and the rebuild of the
+     * player, its track selector and its load control. The renderers are reset by the switch and
+     * instantiate their codecs again for the next source.
+     *
+     * @return Whether the source was swapped, false when a full initialization is required.
+     */
+    private boolean swapSource() {
+        if (player == null || playerNeedsSource || drmUUID != null) {
+            // DRM sources need their session manager to be built on a separate thread
+            return false;
+        }
+        MediaSource mediaSource = buildMediaSource(srcUri, extension, null);
+        // The resume position and the seeks in flight belong to the previous source
+        clearResumePosition();
+        abandonSeeks();
+        notifyTrackSelectionCallbacks(false);
+        lifecycle.onSourceChanged();
+        exoPlayerView.invalidateAspectRatio();
+        startupTracer.start();
+        player.setMediaSource(mediaSource, true);
+        player.prepare();
+        beginPrepareTrace();
+        eventEmitter.loadStart();
+        loadVideoStarted = true;
+        lifecycle.onPrepared();
+        return true;
     }
 
     private void finishPlayerInitialization() {
@@ -738,47 +1116,57 @@ class ReactExoplayerView extends FrameLayout implements
         int type = Util.inferContentType(!TextUtils.isEmpty(overrideExtension) ? "." + overrideExtension
                 : uri.getLastPathSegment());
         config.setDisableDisconnectError(this.disableDisconnectError);
+        // Low latency HLS and DASH are used when the manifest offers them, the live configuration
+        // only overrides the targets of the playback speed control
+        MediaItem mediaItem = new MediaItem.Builder()
+                .setUri(uri)
+                .setLiveTargetOffsetMs(liveTargetOffsetMs)
+                .setLiveMinOffsetMs(liveMinOffsetMs)
+                .setLiveMaxOffsetMs(liveMaxOffsetMs)
+                .setLiveMinPlaybackSpeed(liveMinPlaybackSpeed)
+                .setLiveMaxPlaybackSpeed(liveMaxPlaybackSpeed)
+                .build();
         switch (type) {
             case C.TYPE_SS:
                 return new SsMediaSource.Factory(
                         new DefaultSsChunkSource.Factory(mediaDataSourceFactory),
-                        buildDataSourceFactory(false)
+                        buildDataSourceFactory()
                 ).setDrmSessionManager(drmSessionManager)
                  .setLoadErrorHandlingPolicy(
                         config.buildLoadErrorHandlingPolicy(minLoadRetryCount)
-                ).createMediaSource(uri);
+                ).createMediaSource(mediaItem);
             case C.TYPE_DASH:
                 return new DashMediaSource.Factory(
                         new DefaultDashChunkSource.Factory(mediaDataSourceFactory),
-                        buildDataSourceFactory(false)
+                        buildDataSourceFactory()
                 ).setDrmSessionManager(drmSessionManager)
                  .setLoadErrorHandlingPolicy(
                         config.buildLoadErrorHandlingPolicy(minLoadRetryCount)
-                ).createMediaSource(uri);
+                ).createMediaSource(mediaItem);
             case C.TYPE_HLS:
                 return new HlsMediaSource.Factory(
                         mediaDataSourceFactory
                 ).setDrmSessionManager(drmSessionManager)
                  .setLoadErrorHandlingPolicy(
                         config.buildLoadErrorHandlingPolicy(minLoadRetryCount)
-                ).createMediaSource(uri);
+                ).createMediaSource(mediaItem);
             case C.TYPE_OTHER:
                 return new ProgressiveMediaSource.Factory(
                         mediaDataSourceFactory
                 ).setDrmSessionManager(drmSessionManager)
                  .setLoadErrorHandlingPolicy(
                         config.buildLoadErrorHandlingPolicy(minLoadRetryCount)
-                ).createMediaSource(uri);
+                ).createMediaSource(mediaItem);
             default: {
                 throw new IllegalStateException("Unsupported type: " + type);
             }
         }
     }
 
-    private ArrayList<MediaSource> buildTextSources() {
-        ArrayList<MediaSource> textSources = new ArrayList<>();
+    private List<SideloadedTextTracks.Track> buildSideloadedTextTracks() {
+        List<SideloadedTextTracks.Track> tracks = new ArrayList<>();
         if (textTracks == null) {
-            return textSources;
+            return tracks;
         }
 
         for (int i = 0; i < textTracks.size(); ++i) {
@@ -787,23 +1175,16 @@ class ReactExoplayerView extends FrameLayout implements
             String title = textTrack.hasKey("title")
                     ? textTrack.getString("title") : language + " " + i;
             Uri uri = Uri.parse(textTrack.getString("uri"));
-            MediaSource textSource = buildTextSource(title, uri, textTrack.getString("type"),
-                    language);
-            if (textSource != null) {
-                textSources.add(textSource);
-            }
+            tracks.add(new SideloadedTextTracks.Track(title, language, textTrack.getString("type"), uri));
         }
-        return textSources;
-    }
-
-    private MediaSource buildTextSource(String title, Uri uri, String mimeType, String language) {
-        Format textFormat = Format.createTextSampleFormat(title, mimeType, Format.NO_VALUE, language);
-        return new SingleSampleMediaSource.Factory(mediaDataSourceFactory)
-                .createMediaSource(uri, textFormat, C.TIME_UNSET);
+        return tracks;
     }
 
     private void releasePlayer() {
         if (player != null) {
+            DecoderBudget.unregister(this);
+            playerBandwidthMeter.unregister();
+            hasVideoDecoder = false;
             stopBufferCheckTimer();
             updateResumePosition();
             player.setPlayWhenReady(false);
@@ -811,14 +1192,26 @@ class ReactExoplayerView extends FrameLayout implements
             player.seekTo(0);
             player.release();
             player.removeMetadataOutput(this);
+            player.removeVideoListener(this);
+            player.removeAnalyticsListener(startupLoadCounter);
             trackSelector = null;
+            trackCatalogs.clear();
+            catalogedTrackGroups = null;
             player = null;
+            waitingToPlay = false;
+            lifecycle.onReleased();
+            abandonSeeks();
+            notifyTrackSelectionCallbacks(false);
             exoPlayerView.setPlayer(null);
+            sideloadedTextTracks.setPlayer(null);
             if (playerControlView != null) {
                 playerControlView.setPlayer(null);
             }
         }
+        startupTracer.cancel();
         progressHandler.removeMessages(SHOW_PROGRESS);
+        progressHandler.removeMessages(REPORT_NETWORK_STATS);
+        progressHandler.removeMessages(FLUSH_PENDING_SEEK);
         themedReactContext.removeLifecycleEventListener(this);
         audioBecomingNoisyReceiver.removeListener();
         if (bandwidthMeter != null) {
@@ -915,13 +1308,17 @@ class ReactExoplayerView extends FrameLayout implements
     /**
      * Returns a new DataSource factory.
      *
-     * @param useBandwidthMeter Whether to set {@link #bandwidthMeter} as a listener to the new
-     *                          DataSource factory.
+     * The factory has no transfer listener: the player attaches {@link #playerBandwidthMeter} to
+     * the data sources of its media sources, adding it here as well would count transfers twice.
+     *
      * @return A new DataSource factory.
      */
-    private DataSource.Factory buildDataSourceFactory(boolean useBandwidthMeter) {
-        return DataSourceUtil.getDefaultDataSourceFactory(this.themedReactContext,
-                useBandwidthMeter ? bandwidthMeter : null, requestHeaders);
+    private DataSource.Factory buildDataSourceFactory() {
+        DataSource.Factory factory = DataSourceUtil.getDefaultDataSourceFactory(this.themedReactContext, null, requestHeaders);
+        if (parallelRangeMode == ParallelRangeDataSource.MODE_NEVER) {
+            return factory;
+        }
+        return new ParallelRangeDataSource.Factory(factory, config.getBandwidthMeter(), parallelRangeMode);
     }
 
     /**
@@ -989,6 +1386,7 @@ class ReactExoplayerView extends FrameLayout implements
 
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        waitingToPlay = playWhenReady && playbackState == Player.STATE_BUFFERING;
         String text = "onStateChanged: playWhenReady=" + playWhenReady + ", playbackState=";
         switch (playbackState) {
             case Player.STATE_IDLE:
@@ -1007,6 +1405,9 @@ class ReactExoplayerView extends FrameLayout implements
                 break;
             case Player.STATE_READY:
                 text += "ready";
+                startupTracer.end(StartupTracer.PHASE_PREPARE);
+                finishStartupTraceIfComplete();
+                behindLiveWindowRecoveries = 0;
                 eventEmitter.ready();
                 onBuffering(false);
                 startProgressHandler();
@@ -1047,12 +1448,21 @@ class ReactExoplayerView extends FrameLayout implements
          progressHandler.removeMessages(SHOW_PROGRESS);
     }
 
+    private void startNetworkStatsReports() {
+        progressHandler.removeMessages(REPORT_NETWORK_STATS);
+        reportedNetworkStatsVersion = -1;
+        if (networkStatsInterval > 0) {
+            progressHandler.sendEmptyMessage(REPORT_NETWORK_STATS);
+        }
+    }
+
     private void videoLoaded() {
         if (loadVideoStarted) {
             loadVideoStarted = false;
             setSelectedAudioTrack(audioTrackType, audioTrackValue);
             setSelectedVideoTrack(videoTrackType, videoTrackValue);
             setSelectedTextTrack(textTrackType, textTrackValue);
+            notifyTrackSelectionCallbacks(true);
             Format videoFormat = player.getVideoFormat();
             int width = videoFormat != null ? videoFormat.width : 0;
             int height = videoFormat != null ? videoFormat.height : 0;
@@ -1064,7 +1474,7 @@ class ReactExoplayerView extends FrameLayout implements
             WritableArray audioTrackInfo = getAudioTrackInfo();
             WritableArray textTrackInfo = getTextTrackInfo();
             Timeline timelineRef = player.getCurrentTimeline();
-            int trackRendererIndex = getTrackRendererIndex(C.TRACK_TYPE_VIDEO);
+            TrackCatalog videoCatalog = getTrackCatalog(getTrackRendererIndex(C.TRACK_TYPE_VIDEO));
 
             ExecutorService es = Executors.newSingleThreadExecutor();
             es.execute(new Runnable() {
@@ -1073,7 +1483,7 @@ class ReactExoplayerView extends FrameLayout implements
                 public void run() {
                     // To prevent ANRs caused by getVideoTrackInfo we run this on a different thread and notify the player only when we're done
                     eventEmitter.load(duration, currentPosition, width, height,
-                        audioTrackInfo, textTrackInfo, getVideoTrackInfo(timelineRef, trackRendererIndex), trackId);
+                        audioTrackInfo, textTrackInfo, getVideoTrackInfo(timelineRef, videoCatalog), trackId);
                     parentEs.shutdown();
                 }
             });
@@ -1088,15 +1498,13 @@ class ReactExoplayerView extends FrameLayout implements
             return audioTracks;
         }
 
-        MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
-        int index = getTrackRendererIndex(C.TRACK_TYPE_AUDIO);
-        if (info == null || index == C.INDEX_UNSET) {
+        TrackCatalog catalog = getTrackCatalog(getTrackRendererIndex(C.TRACK_TYPE_AUDIO));
+        if (catalog == null) {
             return audioTracks;
         }
 
-        TrackGroupArray groups = info.getTrackGroups(index);
-        for (int i = 0; i < groups.length; ++i) {
-            Format format = groups.get(i).getFormat(0);
+        for (int i = 0; i < catalog.getGroupCount(); ++i) {
+            Format format = catalog.getGroupFormat(i);
             WritableMap audioTrack = Arguments.createMap();
             audioTrack.putInt("index", i);
             audioTrack.putString("title", format.id != null ? format.id : "");
@@ -1108,7 +1516,7 @@ class ReactExoplayerView extends FrameLayout implements
         }
         return audioTracks;
     }
-    private WritableArray getVideoTrackInfo(Timeline timelineRef, int trackRendererIndex) {
+    private WritableArray getVideoTrackInfo(Timeline timelineRef, TrackCatalog catalog) {
 
         WritableArray contentVideoTracks = this.getVideoTrackInfoFromManifest(timelineRef);
         if (contentVideoTracks != null) {
@@ -1125,13 +1533,12 @@ class ReactExoplayerView extends FrameLayout implements
             return videoTracks;
         }
 
-        MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
-
-        if (info == null || trackRendererIndex == C.INDEX_UNSET) {
+        if (catalog == null) {
             return videoTracks;
         }
 
-        TrackGroupArray groups = info.getTrackGroups(trackRendererIndex);
+        TrackGroupArray groups = catalog.groups;
+        int shortestScreenSize = this.getScreenShortestSide();
         for (int i = 0; i < groups.length; ++i) {
             TrackGroup group = groups.get(i);
 
@@ -1140,7 +1547,6 @@ class ReactExoplayerView extends FrameLayout implements
                 WritableMap videoTrack = Arguments.createMap();
 
                 int shortestFormatSide = format.height < format.width ? format.height : format.width;
-                int shortestScreenSize = this.getScreenShortestSide(this.themedReactContext);
                 if (this.limitMaxResolution && shortestFormatSide > shortestScreenSize) {
                     // This video track is larger than screen resolution so we do not include it in the list of video tracks
                     continue;
@@ -1160,12 +1566,77 @@ class ReactExoplayerView extends FrameLayout implements
         return videoTracks;
     }
 
-    private int getScreenShortestSide(ThemedReactContext context) {
-        if (context == null) {
-            // No context so we fallback to max int
+    /**
+     * @return The shortest side of the display showing this view, cached until the display or the
+     *     configuration changes. Safe to call from any thread.
+     */
+    private int getScreenShortestSide() {
+        int shortestSide = screenShortestSide;
+        if (shortestSide <= 0) {
+            shortestSide = queryScreenShortestSide();
+            screenShortestSide = shortestSide;
+        }
+        return shortestSide;
+    }
+
+    private void updateScreenShortestSide() {
+        screenShortestSide = queryScreenShortestSide();
+    }
+
+    private void registerDisplayListener() {
+        if (Build.VERSION.SDK_INT < 17 || displayListener != null) {
+            return;
+        }
+        DisplayManager displayManager = (DisplayManager) getContext().getSystemService(Context.DISPLAY_SERVICE);
+        if (displayManager == null) {
+            return;
+        }
+        displayListener = new DisplayManager.DisplayListener() {
+            @Override
+            public void onDisplayAdded(int displayId) {
+                // Do nothing.
+            }
+
+            @Override
+            public void onDisplayRemoved(int displayId) {
+                // Do nothing, the view gets detached if its display goes away.
+            }
+
+            @Override
+            public void onDisplayChanged(int displayId) {
+                Display display = getDisplay();
+                if (display == null || display.getDisplayId() == displayId) {
+                    // e.g. rotation, resolution change or a foldable being (un)folded
+                    updateScreenShortestSide();
+                }
+            }
+        };
+        displayManager.registerDisplayListener(displayListener, mainHandler);
+    }
+
+    private void unregisterDisplayListener() {
+        if (Build.VERSION.SDK_INT < 17 || displayListener == null) {
+            return;
+        }
+        DisplayManager displayManager = (DisplayManager) getContext().getSystemService(Context.DISPLAY_SERVICE);
+        if (displayManager != null) {
+            displayManager.unregisterDisplayListener(displayListener);
+        }
+        displayListener = null;
+    }
+
+    private int queryScreenShortestSide() {
+        Display display = Build.VERSION.SDK_INT >= 17 ? getDisplay() : null;
+        if (display == null) {
+            // Not attached yet, use the default display which does not require an activity
+            WindowManager windowManager = (WindowManager) getContext().getApplicationContext()
+                    .getSystemService(Context.WINDOW_SERVICE);
+            display = windowManager != null ? windowManager.getDefaultDisplay() : null;
+        }
+        if (display == null) {
+            // No display so we fallback to max int
             return 2147483647;
         }
-        Display display = context.getCurrentActivity().getWindowManager().getDefaultDisplay();
         int realWidth;
         int realHeight;
 
@@ -1212,7 +1683,7 @@ class ReactExoplayerView extends FrameLayout implements
         final DataSource dataSource = this.mediaDataSourceFactory.createDataSource();
         final Uri sourceUri = this.srcUri;
         final long startTime = this.contentStartTime * 1000 - 100; // s -> ms with 100ms offset
-        int shortestScreenSide = this.getScreenShortestSide(this.themedReactContext);
+        int shortestScreenSide = this.getScreenShortestSide();
         boolean limitMaxRes = this.limitMaxResolution;
 
         Future<WritableArray> result = es.submit(new Callable<WritableArray>() {
@@ -1293,15 +1764,14 @@ class ReactExoplayerView extends FrameLayout implements
             return textTracks;
         }
 
-        MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
-        int index = getTrackRendererIndex(C.TRACK_TYPE_TEXT);
-        if (info == null || index == C.INDEX_UNSET) {
+        TrackCatalog catalog = getTrackCatalog(getTrackRendererIndex(C.TRACK_TYPE_TEXT));
+        if (catalog == null) {
             return textTracks;
         }
 
-        TrackGroupArray groups = info.getTrackGroups(index);
-        for (int i = 0; i < groups.length; ++i) {
-             Format format = groups.get(i).getFormat(0);
+        int embeddedCount = catalog.getGroupCount();
+        for (int i = 0; i < embeddedCount; ++i) {
+             Format format = catalog.getGroupFormat(i);
              WritableMap textTrack = Arguments.createMap();
              textTrack.putInt("index", i);
              textTrack.putString("title", format.id != null ? format.id : "");
@@ -1309,6 +1779,17 @@ class ReactExoplayerView extends FrameLayout implements
              textTrack.putString("language", format.language != null ? format.language : "");
              textTracks.pushMap(textTrack);
         }
+        // Sideloaded tracks are not part of the media source, they follow the embedded ones
+        List<SideloadedTextTracks.Track> sideloaded = sideloadedTextTracks.getTracks();
+        for (int i = 0; i < sideloaded.size(); ++i) {
+             SideloadedTextTracks.Track track = sideloaded.get(i);
+             WritableMap textTrack = Arguments.createMap();
+             textTrack.putInt("index", embeddedCount + i);
+             textTrack.putString("title", track.title != null ? track.title : "");
+             textTrack.putString("type", track.mimeType);
+             textTrack.putString("language", track.language != null ? track.language : "");
+             textTracks.pushMap(textTrack);
+        }
         return textTracks;
     }
 
@@ -1327,6 +1808,7 @@ class ReactExoplayerView extends FrameLayout implements
 
     @Override
     public void onPositionDiscontinuity(int reason) {
+        sideloadedTextTracks.invalidate();
         if (playerNeedsSource) {
             // This will only occur if the user has performed a seek whilst in the error state. Update the
             // resume position so that if the user then retries, playback will resume from the position to
@@ -1344,18 +1826,55 @@ class ReactExoplayerView extends FrameLayout implements
                 && player.getRepeatMode() == Player.REPEAT_MODE_ONE) {
             eventEmitter.end();
         }
-
+        if (reason == Player.DISCONTINUITY_REASON_SEEK && seekTime != C.TIME_UNSET) {
+            handleSeekProcessed(player.getPlaybackState());
+        }
     }
 
     @Override
     public void onPlaybackStateChanged(int playbackState) {
-        if (playbackState == Player.STATE_READY && seekTime != C.TIME_UNSET) {
-            eventEmitter.seek(player.getCurrentPosition(), seekTime);
-            seekTime = C.TIME_UNSET;
-            if (isUsingContentResolution) {
-                // We need to update the selected track to make sure that it still matches user selection if track list has changed in this period
-                setSelectedTrack(C.TRACK_TYPE_VIDEO, videoTrackType, videoTrackValue);
-            }
+        if (playbackState != Player.STATE_READY && playbackState != Player.STATE_ENDED) {
+            return;
+        }
+        if (seekTime != C.TIME_UNSET) {
+            // No discontinuity was reported for the seek, it is processed by now
+            handleSeekProcessed(playbackState);
+        } else if (seekSettling) {
+            settleSeek();
+        }
+    }
+
+    /**
+     * The player moved to the target of the seek. The seek is settled once the position is
+     * decoded, right away if the player does not need to load it. ExoPlayer reports no state change
+     * when the seek does not move the position, e.g. to the current sync point.
+     */
+    private void handleSeekProcessed(int playbackState) {
+        eventEmitter.seek(player.getCurrentPosition(), seekTime);
+        seekTime = C.TIME_UNSET;
+        seekSettling = true;
+        if (playbackState != Player.STATE_BUFFERING) {
+            settleSeek();
+        } else {
+            progressHandler.sendEmptyMessageDelayed(FLUSH_PENDING_SEEK, MAX_SEEK_SETTLE_MS);
+        }
+    }
+
+    private void settleSeek() {
+        seekSettling = false;
+        progressHandler.removeMessages(FLUSH_PENDING_SEEK);
+        if (pendingSeekTime != C.TIME_UNSET) {
+            // More seeks were requested while this one was in flight, only the latest one is performed
+            long positionMs = pendingSeekTime;
+            pendingSeekTime = C.TIME_UNSET;
+            performSeek(positionMs);
+            return;
+        }
+        eventEmitter.seekSettled(player.getCurrentPosition());
+        notifySeekCallbacks(true, player.getCurrentPosition());
+        if (isUsingContentResolution) {
+            // We need to update the selected track to make sure that it still matches user selection if track list has changed in this period
+            setSelectedTrack(C.TRACK_TYPE_VIDEO, videoTrackType, videoTrackValue);
         }
     }
 
@@ -1376,21 +1895,47 @@ class ReactExoplayerView extends FrameLayout implements
 
     @Override
     public void onTracksChanged(TrackGroupArray trackGroups, TrackSelectionArray trackSelections) {
-        // Do Nothing.
+        // The catalogs are rebuilt on their next use
+        trackCatalogs.clear();
+        catalogedTrackGroups = null;
+        // A source without video gives its decoder back
+        DecoderBudget.invalidate();
     }
 
     @Override
     public void onPlaybackParametersChanged(PlaybackParameters params) {
         eventEmitter.playbackRateChange(params.speed);
+        sideloadedTextTracks.invalidate();
+    }
+
+    @Override
+    public void onRenderedFirstFrame() {
+        startupTracer.end(StartupTracer.PHASE_FIRST_FRAME);
+        finishStartupTraceIfComplete();
     }
 
     @Override
     public void onIsPlayingChanged(boolean isPlaying) {
         eventEmitter.playbackStateChanged(isPlaying);
+        updatePlayerPriority();
+        sideloadedTextTracks.invalidate();
     }
 
     @Override
     public void onPlayerError(ExoPlaybackException e) {
+        startupTracer.cancel();
+        // The seek in flight will not complete, later seeks must not wait for it
+        abandonSeeks();
+        notifyTrackSelectionCallbacks(false);
+        if (isBehindLiveWindowException(e) && behindLiveWindowRecoveries < MAX_BEHIND_LIVE_WINDOW_RECOVERIES) {
+            // The source is still valid, only the position fell out of the live window: rejoin the
+            // live edge with the same player and source rather than rebuilding them
+            behindLiveWindowRecoveries++;
+            clearResumePosition();
+            player.seekToDefaultPosition();
+            player.prepare();
+            return;
+        }
         String errorString = "ExoPlaybackException type : " + e.type;
         String errorCode = "2001"; // Playback error code 2xxx (2001 - unknown playback exception)
         boolean needsReInitialization = false;
@@ -1410,11 +1955,21 @@ class ReactExoplayerView extends FrameLayout implements
                         errorString = getResources().getString(R.string.error_no_secure_decoder,
                                 decoderInitializationException.mimeType);
                     } else {
+                        if (DecoderBudget.onDecoderUnavailable(this)) {
+                            // The budget reclaimed a decoder from a lower priority player, or revoked
+                            // ours, retry with it rather than failing
+                            player.prepare();
+                            return;
+                        }
                         errorCode = "2013";
                         errorString = getResources().getString(R.string.error_no_decoder,
                                 decoderInitializationException.mimeType);
                     }
                 } else {
+                    if (DecoderBudget.onDecoderUnavailable(this)) {
+                        player.prepare();
+                        return;
+                    }
                     errorCode = "2014";
                     errorString = getResources().getString(R.string.error_instantiating_decoder,
                             decoderInitializationException.codecInfo.name);
@@ -1482,6 +2037,20 @@ class ReactExoplayerView extends FrameLayout implements
         }
     }
 
+    private static boolean isBehindLiveWindowException(ExoPlaybackException e) {
+        if (e.type != ExoPlaybackException.TYPE_SOURCE) {
+            return false;
+        }
+        Throwable cause = e.getSourceException();
+        while (cause != null) {
+            if (cause instanceof BehindLiveWindowException) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
     private static boolean isBehindLiveWindow(ExoPlaybackException e) {
         Log.e("ExoPlayer Exception", e.toString());
         if (e.type != ExoPlaybackException.TYPE_SOURCE) {
@@ -1511,8 +2080,22 @@ class ReactExoplayerView extends FrameLayout implements
     }
 
     @Override
-    public void onMetadata(Metadata metadata) {
-        eventEmitter.timedMetadata(metadata);
+    public void onMetadata(final Metadata metadata) {
+        if (metadataExecutor.isShutdown()) {
+            return;
+        }
+        final MetadataFilter filter = metadataFilter;
+        final long nowMs = SystemClock.elapsedRealtime();
+        // Filter and convert the entries off the main thread, only the ones JS asked for are emitted
+        metadataExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Metadata filtered = filter.filter(metadata, nowMs);
+                if (filtered != null) {
+                    eventEmitter.timedMetadata(filtered);
+                }
+            }
+        });
     }
 
     // ReactExoplayerViewManager public api
@@ -1528,11 +2111,12 @@ class ReactExoplayerView extends FrameLayout implements
                 this.bandwidthMeter = config.getBandwidthMeter();
                 this.bandwidthMeter.addEventListener(new Handler(), this);
             }
-            this.mediaDataSourceFactory =
-                    DataSourceUtil.getDefaultDataSourceFactory(this.themedReactContext, bandwidthMeter,
-                            this.requestHeaders);
+            this.mediaDataSourceFactory = buildDataSourceFactory();
             if (!isSourceEqual) {
-                reloadSource();
+                // The app may have signed in or changed the cookies of the CDN since the last source
+                DataSourceUtil.refreshCookies(null);
+                updateThumbnailSource();
+                sourceChanged = true;
             }
         }
     }
@@ -1545,7 +2129,10 @@ class ReactExoplayerView extends FrameLayout implements
             this.requestHeaders = null;
             this.mediaDataSourceFactory = null;
             clearResumePosition();
+            updateThumbnailSource();
         }
+        sourceChanged = false;
+        sourceReloadRequired = false;
         releasePlayer();
     }
 
@@ -1557,29 +2144,153 @@ class ReactExoplayerView extends FrameLayout implements
         mReportBandwidth = reportBandwidth;
     }
 
+    /**
+     * Applies to the sources loaded afterwards.
+     */
+    public void setParallelRangeMode(@ParallelRangeDataSource.Mode int parallelRangeMode) {
+        this.parallelRangeMode = parallelRangeMode;
+    }
+
+    /**
+     * @param networkStatsInterval How often to report the statistics of the media requests when they
+     *     changed, in milliseconds, or 0 not to report them.
+     */
+    public void setNetworkStatsInterval(long networkStatsInterval) {
+        this.networkStatsInterval = networkStatsInterval;
+        if (player != null) {
+            startNetworkStatsReports();
+        }
+    }
+
     public void setRawSrc(final Uri uri, final String extension) {
         if (uri != null) {
             boolean isSourceEqual = uri.equals(srcUri);
             this.srcUri = uri;
             this.extension = extension;
-            this.mediaDataSourceFactory = buildDataSourceFactory(true);
-
+            this.mediaDataSourceFactory = buildDataSourceFactory();
             if (!isSourceEqual) {
-                reloadSource();
+                updateThumbnailSource();
+                sourceChanged = true;
+            }
+        }
+    }
+
+    public void setThumbnails(ReadableArray thumbnails) {
+        this.thumbnails = thumbnails;
+        updateThumbnailSource();
+    }
+
+    /**
+     * Shows the thumbnail of a position over the video, e.g. while the user drags a seek bar.
+     *
+     * @param positionMs The position to preview, or {@link C#TIME_UNSET} to hide the preview.
+     */
+    public void setThumbnailPreview(final long positionMs) {
+        thumbnailPreviewPositionMs = positionMs;
+        if (positionMs == C.TIME_UNSET) {
+            if (thumbnailPreviewView != null) {
+                thumbnailPreviewView.setVisibility(View.GONE);
+            }
+            return;
+        }
+        thumbnailProvider.getThumbnail(positionMs, new ThumbnailProvider.Callback() {
+            @Override
+            public void onThumbnail(Bitmap thumbnail) {
+                // Ignore thumbnails of a position that is no longer previewed
+                if (thumbnail == null || thumbnailPreviewPositionMs != positionMs) {
+                    return;
+                }
+                if (thumbnailPreviewView == null) {
+                    thumbnailPreviewView = new ImageView(getContext());
+                    thumbnailPreviewView.setScaleType(ImageView.ScaleType.FIT_CENTER);
+                    addView(thumbnailPreviewView, new LayoutParams(
+                            LayoutParams.MATCH_PARENT,
+                            LayoutParams.MATCH_PARENT));
+                }
+                thumbnailPreviewView.setImageBitmap(thumbnail);
+                thumbnailPreviewView.setVisibility(View.VISIBLE);
+                reLayout(thumbnailPreviewView);
             }
+        });
+    }
+
+    void getThumbnail(long positionMs, ThumbnailProvider.Callback callback) {
+        thumbnailProvider.getThumbnail(positionMs, callback);
+    }
+
+    /**
+     * Points the thumbnail provider to the sprite sheets of the {@code thumbnails} prop, or to the
+     * image adaptation sets of the manifest when a DASH source has no explicit sheets.
+     */
+    private void updateThumbnailSource() {
+        if (thumbnails != null && thumbnails.size() > 0) {
+            List<ThumbnailProvider.TileSheet> sheets = new ArrayList<>();
+            for (int i = 0; i < thumbnails.size(); i++) {
+                ReadableMap sheet = thumbnails.getMap(i);
+                if (sheet == null || !sheet.hasKey("uri")) {
+                    continue;
+                }
+                sheets.add(new ThumbnailProvider.TileSheet(
+                        Uri.parse(sheet.getString("uri")),
+                        sheet.hasKey("startTime") ? Math.round(sheet.getDouble("startTime") * 1000) : 0,
+                        sheet.hasKey("duration") ? Math.round(sheet.getDouble("duration") * 1000) : 0,
+                        sheet.hasKey("columns") ? sheet.getInt("columns") : 1,
+                        sheet.hasKey("rows") ? sheet.getInt("rows") : 1));
+            }
+            thumbnailProvider.setSheets(sheets, mediaDataSourceFactory);
+        } else if (srcUri != null && Util.inferContentType(!TextUtils.isEmpty(extension) ? "." + extension
+                : srcUri.getLastPathSegment()) == C.TYPE_DASH) {
+            thumbnailProvider.setDashManifest(srcUri, mediaDataSourceFactory);
+        } else {
+            thumbnailProvider.clear();
         }
     }
 
+    public void setMetadataFilter(Set<String> schemes, Set<String> frameIds, long dedupeWindowMs, int maxRate) {
+        metadataFilter = new MetadataFilter(schemes, frameIds, dedupeWindowMs, maxRate);
+    }
+
     public void setTextTracks(ReadableArray textTracks) {
         this.textTracks = textTracks;
-        reloadSource();
+        // Sidecar tracks are rendered outside of the player, the media source is left untouched
+        sideloadedTextTracks.setTracks(buildSideloadedTextTracks());
+        if (player != null && !loadVideoStarted) {
+            // The requested track may only be part of the new list
+            setSelectedTextTrack(textTrackType, textTrackValue);
+        }
     }
 
     private void reloadSource() {
         playerNeedsSource = true;
+        // A preparation in progress is for the previous source
+        lifecycle.onSourceChanged();
+        abandonSeeks();
+        notifyTrackSelectionCallbacks(false);
         initializePlayer();
     }
 
+    /**
+     * Applies the changes made by the props of an update transaction at once. Props that require
+     * the source or the player to be set up again only flag it, so a render changing several of
+     * them prepares the player at most once, with all the new props.
+     */
+    public void commitPropChanges() {
+        boolean rebuildPlayer = playerRebuildRequired;
+        boolean loadSource = sourceChanged;
+        boolean reloadSource = sourceReloadRequired;
+        playerRebuildRequired = false;
+        sourceChanged = false;
+        sourceReloadRequired = false;
+        if (rebuildPlayer) {
+            releasePlayer();
+            initializePlayer();
+        } else if (loadSource && swapSource()) {
+            // The running player now plays the new source
+        } else if (loadSource || reloadSource) {
+            reloadSource();
+        }
+    }
+
     public void setResizeModeModifier(@ResizeMode.Mode int resizeMode) {
         exoPlayerView.setResizeMode(resizeMode);
     }
@@ -1588,6 +2299,35 @@ class ReactExoplayerView extends FrameLayout implements
         this.limitMaxResolution = limitMaxResolution;
     }
 
+    public void setLimitResolutionToView(boolean limitResolutionToView) {
+        if (this.limitResolutionToView != limitResolutionToView) {
+            this.limitResolutionToView = limitResolutionToView;
+            applyViewportConstraints();
+        }
+    }
+
+    public void setExportChromeTrace(boolean exportChromeTrace) {
+        this.exportChromeTrace = exportChromeTrace;
+    }
+
+    /**
+     * Caps the video tracks to the rendered size of the video, so adaptive playback does not
+     * download more pixels than the view shows. The size is in physical pixels and follows the
+     * resize mode, the cap is lifted as soon as the view grows, e.g. when going fullscreen.
+     */
+    private void applyViewportConstraints() {
+        if (trackSelector == null) {
+            return;
+        }
+        DefaultTrackSelector.ParametersBuilder builder = trackSelector.buildUponParameters();
+        if (limitResolutionToView && viewportWidth > 0 && viewportHeight > 0) {
+            builder.setViewportSize(viewportWidth, viewportHeight, false);
+        } else {
+            builder.clearViewportSizeConstraints();
+        }
+        trackSelector.setParameters(builder);
+    }
+
     private void applyModifiers() {
         setRepeatModifier(repeat);
         setMutedModifier(muted);
@@ -1611,15 +2351,12 @@ class ReactExoplayerView extends FrameLayout implements
     public void setSelectedTrack(int trackType, String type, Dynamic value) {
         if (player == null) return;
         int rendererIndex = getTrackRendererIndex(trackType);
-        if (rendererIndex == C.INDEX_UNSET) {
-            return;
-        }
-        MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
-        if (info == null) {
+        TrackCatalog catalog = getTrackCatalog(rendererIndex);
+        if (catalog == null) {
             return;
         }
 
-        TrackGroupArray groups = info.getTrackGroups(rendererIndex);
+        TrackGroupArray groups = catalog.groups;
         int groupIndex = C.INDEX_UNSET;
         int[] tracks = {0} ;
 
@@ -1633,87 +2370,44 @@ class ReactExoplayerView extends FrameLayout implements
                 .build();
 
         if (type.equals("disabled")) {
+            if (trackType == C.TRACK_TYPE_TEXT) {
+                sideloadedTextTracks.deselect();
+            }
             trackSelector.setParameters(disableParameters);
             return;
         } else if (type.equals("language")) {
-            for (int i = 0; i < groups.length; ++i) {
-                Format format = groups.get(i).getFormat(0);
-                if (format.language != null && format.language.equals(value.asString())) {
-                    groupIndex = i;
-                    break;
-                }
-            }
+            groupIndex = catalog.findGroupByLanguage(value.asString());
         } else if (type.equals("title")) {
-            for (int i = 0; i < groups.length; ++i) {
-                Format format = groups.get(i).getFormat(0);
-                if (format.id != null && format.id.equals(value.asString())) {
-                    groupIndex = i;
-                    break;
-                }
-            }
+            groupIndex = catalog.findGroupById(value.asString());
         } else if (type.equals("index")) {
             if (value.asInt() < groups.length) {
                 groupIndex = value.asInt();
             }
         } else if (type.equals("resolution")) {
+            ResolutionLadder ladder = catalog.getLadder();
             int height = value.asInt();
-            for (int i = 0; i < groups.length; ++i) { // Search for the exact height
-                TrackGroup group = groups.get(i);
-                Format closestFormat = null;
-                int closestTrackIndex = -1;
-                boolean usingExactMatch = false;
-                for (int j = 0; j < group.length; j++) {
-                    Format format = group.getFormat(j);
-                    if (format.height == height) {
-                        groupIndex = i;
-                        tracks[0] = j;
-                        closestFormat = null;
-                        closestTrackIndex = -1;
-                        usingExactMatch = true;
-                        break;
-                    } else if (isUsingContentResolution) {
-                        // When using content resolution rather than ads, we need to try and find the closest match if there is no exact match
-                        if (closestFormat != null) {
-                            if ((format.bitrate > closestFormat.bitrate || format.height > closestFormat.height) && format.height < height) {
-                                // Higher quality match
-                                closestFormat = format;
-                                closestTrackIndex = j;
-                            }
-                        } else if(format.height < height) {
-                            closestFormat = format;
-                            closestTrackIndex = j;
-                        }
-                    }
-                }
-                // This is a fallback if the new period contains only higher resolutions than the user has selected
-                if (closestFormat == null && isUsingContentResolution && !usingExactMatch) {
-                    // No close match found - so we pick the lowest quality
-                    int minHeight = Integer.MAX_VALUE;
-                    for (int j = 0; j < group.length; j++) {
-                        Format format = group.getFormat(j);
-                        if (format.height < minHeight) {
-                            minHeight = format.height;
-                            groupIndex = i;
-                            tracks[0] = j;
-                        }
-                    }
-                }
-                // Selecting the closest match found
-                if (closestFormat != null && closestTrackIndex != -1) {
-                    // We found the closest match instead of an exact one
-                    groupIndex = i;
-                    tracks[0] = closestTrackIndex;
+            int position = ladder.findExact(height);
+            if (position == ResolutionLadder.NOT_FOUND && isUsingContentResolution) {
+                // When using content resolution rather than ads, we need to try and find the closest match if there is no exact match
+                position = ladder.findClosestBelow(height);
+                if (position == ResolutionLadder.NOT_FOUND) {
+                    // This is a fallback if the new period contains only higher resolutions than the user has selected
+                    position = ladder.findLowest();
                 }
             }
+            if (position != ResolutionLadder.NOT_FOUND) {
+                groupIndex = ladder.getGroupIndex(position);
+                tracks[0] = ladder.getTrackIndex(position);
+            }
         } else if (rendererIndex == C.TRACK_TYPE_TEXT && Util.SDK_INT > 18) { // Text default
             // Use system settings if possible
             CaptioningManager captioningManager
                     = (CaptioningManager)themedReactContext.getSystemService(Context.CAPTIONING_SERVICE);
             if (captioningManager != null && captioningManager.isEnabled()) {
-                groupIndex = getGroupIndexForDefaultLocale(groups);
+                groupIndex = getGroupIndexForDefaultLocale(catalog);
             }
         } else if (rendererIndex == C.TRACK_TYPE_AUDIO) { // Audio default
-            groupIndex = getGroupIndexForDefaultLocale(groups);
+            groupIndex = getGroupIndexForDefaultLocale(catalog);
         }
 
         if (groupIndex == C.INDEX_UNSET && trackType == C.TRACK_TYPE_VIDEO && groups.length != 0) { // Video auto
@@ -1747,6 +2441,18 @@ class ReactExoplayerView extends FrameLayout implements
             }
         }
 
+        if (trackType == C.TRACK_TYPE_TEXT) {
+            int sideloadedIndex = groupIndex == C.INDEX_UNSET
+                    ? getSideloadedTextTrackIndex(type, value, groups.length) : C.INDEX_UNSET;
+            if (sideloadedIndex != C.INDEX_UNSET) {
+                // Sideloaded tracks are rendered outside of the player, the text renderer is not needed
+                trackSelector.setParameters(disableParameters);
+                sideloadedTextTracks.select(sideloadedIndex, mediaDataSourceFactory);
+                return;
+            }
+            sideloadedTextTracks.deselect();
+        }
+
         if (groupIndex == C.INDEX_UNSET) {
             trackSelector.setParameters(disableParameters);
             return;
@@ -1754,13 +2460,40 @@ class ReactExoplayerView extends FrameLayout implements
 
         DefaultTrackSelector.Parameters selectionParameters = trackSelector.getParameters()
                 .buildUpon()
-                .setRendererDisabled(rendererIndex, false)
+                .setRendererDisabled(rendererIndex, trackType == C.TRACK_TYPE_VIDEO && !hasVideoDecoder)
                 .setSelectionOverride(rendererIndex, groups,
                         new DefaultTrackSelector.SelectionOverride(groupIndex, tracks))
                 .build();
         trackSelector.setParameters(selectionParameters);
     }
 
+    /**
+     * @return The index in {@link #sideloadedTextTracks} of the track matching the selection, or
+     *     {@link C#INDEX_UNSET}. Indexes start after the {@code embeddedCount} embedded tracks.
+     */
+    private int getSideloadedTextTrackIndex(String type, Dynamic value, int embeddedCount) {
+        List<SideloadedTextTracks.Track> tracks = sideloadedTextTracks.getTracks();
+        if (type.equals("language")) {
+            for (int i = 0; i < tracks.size(); ++i) {
+                if (tracks.get(i).language != null && tracks.get(i).language.equals(value.asString())) {
+                    return i;
+                }
+            }
+        } else if (type.equals("title")) {
+            for (int i = 0; i < tracks.size(); ++i) {
+                if (tracks.get(i).title != null && tracks.get(i).title.equals(value.asString())) {
+                    return i;
+                }
+            }
+        } else if (type.equals("index")) {
+            int index = value.asInt() - embeddedCount;
+            if (index >= 0 && index < tracks.size()) {
+                return index;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
     private boolean isFormatSupported(Format format) {
         int width = format.width == Format.NO_VALUE ? 0 : format.width;
         int height = format.height == Format.NO_VALUE ? 0 : format.height;
@@ -1780,86 +2513,213 @@ class ReactExoplayerView extends FrameLayout implements
         return isSupported;
     }
 
-    private int getGroupIndexForDefaultLocale(TrackGroupArray groups) {
-        if (groups.length == 0){
+    private int getGroupIndexForDefaultLocale(TrackCatalog catalog) {
+        if (catalog.getGroupCount() == 0){
             return C.INDEX_UNSET;
         }
 
-        int groupIndex = 0; // default if no match
         String locale2 = Locale.getDefault().getLanguage(); // 2 letter code
         String locale3 = Locale.getDefault().getISO3Language(); // 3 letter code
-        for (int i = 0; i < groups.length; ++i) {
-            Format format = groups.get(i).getFormat(0);
-            String language = format.language;
-            if (language != null && (language.equals(locale2) || language.equals(locale3))) {
-                groupIndex = i;
-                break;
+        int groupIndex2 = catalog.findGroupByLanguage(locale2);
+        int groupIndex3 = catalog.findGroupByLanguage(locale3);
+        if (groupIndex2 == C.INDEX_UNSET && groupIndex3 == C.INDEX_UNSET) {
+            return 0; // default if no match
+        }
+        if (groupIndex2 == C.INDEX_UNSET || groupIndex3 == C.INDEX_UNSET) {
+            return Math.max(groupIndex2, groupIndex3);
+        }
+        return Math.min(groupIndex2, groupIndex3);
+    }
+
+    /**
+     * @return The catalog of the tracks of a renderer in the current period, built on first use, or
+     *     null if the tracks are not known yet.
+     */
+    private TrackCatalog getTrackCatalog(int rendererIndex) {
+        if (player == null || trackSelector == null || rendererIndex == C.INDEX_UNSET) {
+            return null;
+        }
+        TrackGroupArray currentTrackGroups = player.getCurrentTrackGroups();
+        if (currentTrackGroups != catalogedTrackGroups) {
+            trackCatalogs.clear();
+            catalogedTrackGroups = currentTrackGroups;
+        }
+        TrackCatalog catalog = trackCatalogs.get(rendererIndex);
+        if (catalog == null) {
+            MappingTrackSelector.MappedTrackInfo info = trackSelector.getCurrentMappedTrackInfo();
+            if (info == null) {
+                return null;
             }
+            catalog = new TrackCatalog(info.getTrackGroups(rendererIndex));
+            trackCatalogs.put(rendererIndex, catalog);
         }
-        return groupIndex;
+        return catalog;
     }
 
     public void setSelectedVideoTrack(String type, Dynamic value) {
         videoTrackType = type;
         videoTrackValue = value;
-        setSelectedTrack(C.TRACK_TYPE_VIDEO, videoTrackType, videoTrackValue);
+        lifecycle.runWhenPrepared(applySelectedVideoTrack);
     }
 
     public void setSelectedAudioTrack(String type, Dynamic value) {
         audioTrackType = type;
         audioTrackValue = value;
-        setSelectedTrack(C.TRACK_TYPE_AUDIO, audioTrackType, audioTrackValue);
+        lifecycle.runWhenPrepared(applySelectedAudioTrack);
     }
 
     public void setSelectedTextTrack(String type, Dynamic value) {
         textTrackType = type;
         textTrackValue = value;
-        setSelectedTrack(C.TRACK_TYPE_TEXT, textTrackType, textTrackValue);
+        lifecycle.runWhenPrepared(applySelectedTextTrack);
     }
 
     public void setPausedModifier(boolean paused) {
         isPaused = paused;
-        if (player != null) {
-            if (!paused) {
-                startPlayback();
-            } else {
-                pausePlayback();
-            }
-        }
+        lifecycle.runWhenCoreReady(applyPaused);
     }
 
     public void setMutedModifier(boolean muted) {
         this.muted = muted;
         audioVolume = muted ? 0.f : 1.f;
-        if (player != null) {
-            player.setVolume(audioVolume);
-        }
+        lifecycle.runWhenCoreReady(applyVolume);
     }
 
 
     public void setVolumeModifier(float volume) {
         audioVolume = volume;
-        if (player != null) {
-            player.setVolume(audioVolume);
+        lifecycle.runWhenCoreReady(applyVolume);
+    }
+
+    /**
+     * Runs the action once the player is built, after the modifiers and commands queued before it.
+     */
+    void runWhenCoreReady(Runnable action) {
+        lifecycle.runWhenCoreReady(action);
+    }
+
+    public void seekTo(final long positionMs) {
+        if (player == null) {
+            lifecycle.runWhenCoreReady(new Runnable() {
+                @Override
+                public void run() {
+                    seekTo(positionMs);
+                }
+            });
+            return;
         }
+        if (lifecycle.getState() != PlayerLifecycle.STATE_PREPARED) {
+            // Seek the source once it is prepared
+            lifecycle.runWhenPrepared(new Runnable() {
+                @Override
+                public void run() {
+                    seekTo(positionMs);
+                }
+            });
+            return;
+        }
+        if (seekTime != C.TIME_UNSET || seekSettling) {
+            // A seek is still in flight, e.g. while the user drags a seek bar. Keep only the latest
+            // target instead of flushing the buffer and restarting the load for every value.
+            pendingSeekTime = positionMs;
+            return;
+        }
+        performSeek(positionMs);
     }
 
-    public void seekTo(long positionMs) {
-        if (player != null) {
-            seekTime = positionMs;
-            player.seekTo(positionMs);
+    interface SeekCallback {
+        /**
+         * @param completed Whether the seek completed, false if it was abandoned.
+         * @param positionMs The position once the seeks settled, {@link C#TIME_UNSET} if abandoned.
+         */
+        void onSeekComplete(boolean completed, long positionMs);
+    }
+
+    /**
+     * Seeks without going through the {@code seek} prop, for the imperative API.
+     *
+     * @param callback Called once no more seeks are pending, like {@code onSeekSettled}, or when
+     *     the seek is abandoned.
+     */
+    void seekTo(long positionMs, SeekCallback callback) {
+        seekCallbacks.add(callback);
+        seekTo(positionMs);
+    }
+
+    void removeSeekCallback(SeekCallback callback) {
+        seekCallbacks.remove(callback);
+    }
+
+    private void performSeek(long positionMs) {
+        progressHandler.removeMessages(FLUSH_PENDING_SEEK);
+        seekTime = positionMs;
+        seekSettling = false;
+        player.seekTo(positionMs);
+    }
+
+    /**
+     * Forgets the seeks in flight, e.g. when the source changes or the player fails.
+     */
+    private void abandonSeeks() {
+        progressHandler.removeMessages(FLUSH_PENDING_SEEK);
+        seekTime = C.TIME_UNSET;
+        seekSettling = false;
+        pendingSeekTime = C.TIME_UNSET;
+        notifySeekCallbacks(false, C.TIME_UNSET);
+    }
+
+    private void notifySeekCallbacks(boolean completed, long positionMs) {
+        if (seekCallbacks.isEmpty()) {
+            return;
+        }
+        List<SeekCallback> callbacks = new ArrayList<>(seekCallbacks);
+        seekCallbacks.clear();
+        for (SeekCallback callback : callbacks) {
+            callback.onSeekComplete(completed, positionMs);
         }
     }
 
-    public void setRateModifier(float newRate) {
-        rate = newRate;
+    interface TrackSelectionCallback {
+        /**
+         * @param applied Whether the selection was applied to the tracks of the source, false if
+         *     the source changed or failed before its tracks were known.
+         */
+        void onTrackSelectionComplete(boolean applied);
+    }
 
-        if (player != null) {
-            PlaybackParameters params = new PlaybackParameters(rate, 1f);
-            player.setPlaybackParameters(params);
+    /**
+     * Calls back once the selected tracks are applied to the tracks of the source, for the
+     * imperative API. The selection is applied when the source is loaded, right away if it is.
+     */
+    void runWhenTracksSelected(TrackSelectionCallback callback) {
+        if (lifecycle.getState() == PlayerLifecycle.STATE_PREPARED && !loadVideoStarted) {
+            callback.onTrackSelectionComplete(true);
+        } else {
+            trackSelectionCallbacks.add(callback);
+        }
+    }
+
+    private void notifyTrackSelectionCallbacks(boolean applied) {
+        if (trackSelectionCallbacks.isEmpty()) {
+            return;
+        }
+        List<TrackSelectionCallback> callbacks = new ArrayList<>(trackSelectionCallbacks);
+        trackSelectionCallbacks.clear();
+        for (TrackSelectionCallback callback : callbacks) {
+            callback.onTrackSelectionComplete(applied);
         }
     }
 
+    public void setSeekParametersModifier(SeekParameters seekParameters) {
+        this.seekParameters = seekParameters;
+        lifecycle.runWhenCoreReady(applySeekParameters);
+    }
+
+    public void setRateModifier(float newRate) {
+        rate = newRate;
+        lifecycle.runWhenCoreReady(applyRate);
+    }
+
     public void setMaxBitRateModifier(int newMaxBitRate) {
         maxBitRate = newMaxBitRate;
         if (player != null) {
@@ -1869,9 +2729,34 @@ class ReactExoplayerView extends FrameLayout implements
     }
 
     public void setMinLoadRetryCountModifier(int newMinLoadRetryCount) {
+        if (minLoadRetryCount == newMinLoadRetryCount) {
+            return;
+        }
         minLoadRetryCount = newMinLoadRetryCount;
-        releasePlayer();
-        initializePlayer();
+        // The retry count only affects the media source, the player and its decoders can be kept
+        sourceReloadRequired = true;
+    }
+
+    /**
+     * Sets the live configuration of the media item, {@link C#TIME_UNSET} and {@link C#RATE_UNSET}
+     * values keep the defaults of the manifest or of ExoPlayer.
+     */
+    public void setLiveConfiguration(long targetOffsetMs, long minOffsetMs, long maxOffsetMs,
+                                     float minPlaybackSpeed, float maxPlaybackSpeed) {
+        if (liveTargetOffsetMs == targetOffsetMs
+                && liveMinOffsetMs == minOffsetMs
+                && liveMaxOffsetMs == maxOffsetMs
+                && liveMinPlaybackSpeed == minPlaybackSpeed
+                && liveMaxPlaybackSpeed == maxPlaybackSpeed) {
+            return;
+        }
+        liveTargetOffsetMs = targetOffsetMs;
+        liveMinOffsetMs = minOffsetMs;
+        liveMaxOffsetMs = maxOffsetMs;
+        liveMinPlaybackSpeed = minPlaybackSpeed;
+        liveMaxPlaybackSpeed = maxPlaybackSpeed;
+        // The configuration is part of the media item, the player can be kept
+        sourceReloadRequired = true;
     }
 
     public void setPlayInBackground(boolean playInBackground) {
@@ -1956,6 +2841,17 @@ class ReactExoplayerView extends FrameLayout implements
     }
 
     public void setBufferConfig(int newMinBufferMs, int newMaxBufferMs, int newBufferForPlaybackMs, int newBufferForPlaybackAfterRebufferMs, double newMaxHeapAllocationPercent, double newMinBackBufferMemoryReservePercent, double newMinBufferMemoryReservePercent, double minAvailableMemoryToEnableBackBuffer) {
+        if (minBufferMs == newMinBufferMs
+                && maxBufferMs == newMaxBufferMs
+                && bufferForPlaybackMs == newBufferForPlaybackMs
+                && bufferForPlaybackAfterRebufferMs == newBufferForPlaybackAfterRebufferMs
+                && maxHeapAllocationPercent == newMaxHeapAllocationPercent
+                && minBackBufferMemoryReservePercent == newMinBackBufferMemoryReservePercent
+                && minBufferMemoryReservePercent == newMinBufferMemoryReservePercent
+                && enableBackBufferAvailableMemory == minAvailableMemoryToEnableBackBuffer) {
+            // Nothing changed, avoid tearing down the player and its decoders
+            return;
+        }
         minBufferMs = newMinBufferMs;
         maxBufferMs = newMaxBufferMs;
         bufferForPlaybackMs = newBufferForPlaybackMs;
@@ -1964,8 +2860,7 @@ class ReactExoplayerView extends FrameLayout implements
         minBackBufferMemoryReservePercent = newMinBackBufferMemoryReservePercent;
         minBufferMemoryReservePercent = newMinBufferMemoryReservePercent;
         enableBackBufferAvailableMemory = minAvailableMemoryToEnableBackBuffer;
-        releasePlayer();
-        initializePlayer();
+        playerRebuildRequired = true;
     }
 
     public void setDrmType(UUID drmType) {
@@ -14,13 +14,17 @@ import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.ViewGroupManager;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.facebook.react.bridge.ReactMethod;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.upstream.RawResourceDataSource;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -37,6 +41,8 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
     private static final String PROP_DRM_LICENSESERVER = "licenseServer";
     private static final String PROP_DRM_HEADERS = "headers";
     private static final String PROP_LIMIT_MAX_RESOLUTION = "limitMaxResolution";
+    private static final String PROP_LIMIT_RESOLUTION_TO_VIEW = "limitResolutionToView";
+    private static final String PROP_EXPORT_CHROME_TRACE = "exportChromeTrace";
     private static final String PROP_SRC_HEADERS = "requestHeaders";
     private static final String PROP_RESIZE_MODE = "resizeMode";
     private static final String PROP_REPEAT = "repeat";
@@ -47,6 +53,13 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
     private static final String PROP_SELECTED_TEXT_TRACK_TYPE = "type";
     private static final String PROP_SELECTED_TEXT_TRACK_VALUE = "value";
     private static final String PROP_TEXT_TRACKS = "textTracks";
+    private static final String PROP_THUMBNAILS = "thumbnails";
+    private static final String PROP_METADATA_FILTER = "metadataFilter";
+    private static final String PROP_METADATA_FILTER_SCHEMES = "schemes";
+    private static final String PROP_METADATA_FILTER_FRAME_IDS = "frameIds";
+    private static final String PROP_METADATA_FILTER_DEDUPE_WINDOW_MS = "dedupeWindowMs";
+    private static final String PROP_METADATA_FILTER_MAX_RATE = "maxRate";
+    private static final String PROP_THUMBNAIL_PREVIEW = "thumbnailPreview";
     private static final String PROP_PAUSED = "paused";
     private static final String PROP_MUTED = "muted";
     private static final String PROP_VOLUME = "volume";
@@ -59,11 +72,20 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
     private static final String PROP_BUFFER_CONFIG_MAX_HEAP_ALLOCATION_PERCENT = "maxHeapAllocationPercent";
     private static final String PROP_BUFFER_CONFIG_MIN_BACK_BUFFER_MEMORY_RESERVE_PERCENT = "minBackBufferMemoryReservePercent";
     private static final String PROP_BUFFER_CONFIG_MIN_BUFFER_MEMORY_RESERVE_PERCENT = "minBufferMemoryReservePercent";
+    private static final String PROP_LIVE_CONFIG = "liveConfig";
+    private static final String PROP_LIVE_CONFIG_TARGET_OFFSET_MS = "targetOffsetMs";
+    private static final String PROP_LIVE_CONFIG_MIN_OFFSET_MS = "minOffsetMs";
+    private static final String PROP_LIVE_CONFIG_MAX_OFFSET_MS = "maxOffsetMs";
+    private static final String PROP_LIVE_CONFIG_MIN_PLAYBACK_SPEED = "minPlaybackSpeed";
+    private static final String PROP_LIVE_CONFIG_MAX_PLAYBACK_SPEED = "maxPlaybackSpeed";
     private static final String PROP_PREVENTS_DISPLAY_SLEEP_DURING_VIDEO_PLAYBACK = "preventsDisplaySleepDuringVideoPlayback";
     private static final String PROP_MIN_AVAILABLE_MEMORY_TO_ENABLE_BACK_BUFFER = "minAvailableMemoryToEnableBackBuffer";
     private static final String PROP_PROGRESS_UPDATE_INTERVAL = "progressUpdateInterval";
     private static final String PROP_REPORT_BANDWIDTH = "reportBandwidth";
+    private static final String PROP_NETWORK_STATS_INTERVAL = "networkStatsInterval";
+    private static final String PROP_PARALLEL_RANGE_REQUESTS = "parallelRangeRequests";
     private static final String PROP_SEEK = "seek";
+    private static final String PROP_SEEK_PARAMETERS = "seekParameters";
     private static final String PROP_RATE = "rate";
     private static final String PROP_MIN_LOAD_RETRY_COUNT = "minLoadRetryCount";
     private static final String PROP_MAXIMUM_BIT_RATE = "maxBitRate";
@@ -97,6 +119,12 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         return new ReactExoplayerView(themedReactContext, config);
     }
 
+    @Override
+    protected void onAfterUpdateTransaction(ReactExoplayerView view) {
+        super.onAfterUpdateTransaction(view);
+        view.commitPropChanges();
+    }
+
     @Override
     public void onDropViewInstance(ReactExoplayerView view) {
         view.cleanUpResources();
@@ -151,6 +179,16 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         videoView.setLimitMaxResolution(limitMaxResolution);
     }
 
+    @ReactProp(name = PROP_LIMIT_RESOLUTION_TO_VIEW, defaultBoolean = false)
+    public void setLimitResolutionToView(final ReactExoplayerView videoView, final boolean limitResolutionToView) {
+        videoView.setLimitResolutionToView(limitResolutionToView);
+    }
+
+    @ReactProp(name = PROP_EXPORT_CHROME_TRACE, defaultBoolean = false)
+    public void setExportChromeTrace(final ReactExoplayerView videoView, final boolean exportChromeTrace) {
+        videoView.setExportChromeTrace(exportChromeTrace);
+    }
+
     @ReactProp(name = PROP_SRC)
     public void setSrc(final ReactExoplayerView videoView, @Nullable ReadableMap src) {
         Context context = videoView.getContext().getApplicationContext();
@@ -254,6 +292,36 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         videoView.setTextTracks(textTracks);
     }
 
+    @ReactProp(name = PROP_THUMBNAILS)
+    public void setThumbnails(final ReactExoplayerView videoView,
+                              @Nullable ReadableArray thumbnails) {
+        videoView.setThumbnails(thumbnails);
+    }
+
+    @ReactProp(name = PROP_THUMBNAIL_PREVIEW, defaultDouble = -1)
+    public void setThumbnailPreview(final ReactExoplayerView videoView, final double thumbnailPreview) {
+        videoView.setThumbnailPreview(thumbnailPreview < 0 ? C.TIME_UNSET : Math.round(thumbnailPreview * 1000d));
+    }
+
+    @ReactProp(name = PROP_METADATA_FILTER)
+    public void setMetadataFilter(final ReactExoplayerView videoView, @Nullable ReadableMap metadataFilter) {
+        Set<String> schemes = null;
+        Set<String> frameIds = null;
+        long dedupeWindowMs = 0;
+        int maxRate = 0;
+        if (metadataFilter != null) {
+            schemes = metadataFilter.hasKey(PROP_METADATA_FILTER_SCHEMES)
+                    ? toStringSet(metadataFilter.getArray(PROP_METADATA_FILTER_SCHEMES)) : null;
+            frameIds = metadataFilter.hasKey(PROP_METADATA_FILTER_FRAME_IDS)
+                    ? toStringSet(metadataFilter.getArray(PROP_METADATA_FILTER_FRAME_IDS)) : null;
+            dedupeWindowMs = metadataFilter.hasKey(PROP_METADATA_FILTER_DEDUPE_WINDOW_MS)
+                    ? (long) metadataFilter.getDouble(PROP_METADATA_FILTER_DEDUPE_WINDOW_MS) : 0;
+            maxRate = metadataFilter.hasKey(PROP_METADATA_FILTER_MAX_RATE)
+                    ? metadataFilter.getInt(PROP_METADATA_FILTER_MAX_RATE) : 0;
+        }
+        videoView.setMetadataFilter(schemes, frameIds, dedupeWindowMs, maxRate);
+    }
+
     @ReactProp(name = PROP_PAUSED, defaultBoolean = false)
     public void setPaused(final ReactExoplayerView videoView, final boolean paused) {
         videoView.setPausedModifier(paused);
@@ -279,11 +347,42 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         videoView.setReportBandwidth(reportBandwidth);
     }
 
+    @ReactProp(name = PROP_NETWORK_STATS_INTERVAL, defaultFloat = 0.0f)
+    public void setNetworkStatsInterval(final ReactExoplayerView videoView, final float networkStatsInterval) {
+        videoView.setNetworkStatsInterval(Math.round(networkStatsInterval));
+    }
+
     @ReactProp(name = PROP_SEEK)
     public void setSeek(final ReactExoplayerView videoView, final float seek) {
         videoView.seekTo(Math.round(seek * 1000f));
     }
 
+    @ReactProp(name = PROP_PARALLEL_RANGE_REQUESTS)
+    public void setParallelRangeRequests(final ReactExoplayerView videoView, @Nullable final String parallelRangeRequests) {
+        int mode = ParallelRangeDataSource.MODE_AUTO;
+        if ("never".equals(parallelRangeRequests)) {
+            mode = ParallelRangeDataSource.MODE_NEVER;
+        } else if ("always".equals(parallelRangeRequests)) {
+            mode = ParallelRangeDataSource.MODE_ALWAYS;
+        }
+        videoView.setParallelRangeMode(mode);
+    }
+
+    @ReactProp(name = PROP_SEEK_PARAMETERS)
+    public void setSeekParameters(final ReactExoplayerView videoView, @Nullable final String seekParameters) {
+        SeekParameters parameters = SeekParameters.DEFAULT;
+        if ("exact".equals(seekParameters)) {
+            parameters = SeekParameters.EXACT;
+        } else if ("closestSync".equals(seekParameters)) {
+            parameters = SeekParameters.CLOSEST_SYNC;
+        } else if ("previousSync".equals(seekParameters)) {
+            parameters = SeekParameters.PREVIOUS_SYNC;
+        } else if ("nextSync".equals(seekParameters)) {
+            parameters = SeekParameters.NEXT_SYNC;
+        }
+        videoView.setSeekParametersModifier(parameters);
+    }
+
     @ReactProp(name = PROP_RATE)
     public void setRate(final ReactExoplayerView videoView, final float rate) {
         videoView.setRateModifier(rate);
@@ -387,6 +486,28 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         }
     }
 
+    @ReactProp(name = PROP_LIVE_CONFIG)
+    public void setLiveConfig(final ReactExoplayerView videoView, @Nullable ReadableMap liveConfig) {
+        long targetOffsetMs = C.TIME_UNSET;
+        long minOffsetMs = C.TIME_UNSET;
+        long maxOffsetMs = C.TIME_UNSET;
+        float minPlaybackSpeed = C.RATE_UNSET;
+        float maxPlaybackSpeed = C.RATE_UNSET;
+        if (liveConfig != null) {
+            targetOffsetMs = liveConfig.hasKey(PROP_LIVE_CONFIG_TARGET_OFFSET_MS)
+                    ? liveConfig.getInt(PROP_LIVE_CONFIG_TARGET_OFFSET_MS) : targetOffsetMs;
+            minOffsetMs = liveConfig.hasKey(PROP_LIVE_CONFIG_MIN_OFFSET_MS)
+                    ? liveConfig.getInt(PROP_LIVE_CONFIG_MIN_OFFSET_MS) : minOffsetMs;
+            maxOffsetMs = liveConfig.hasKey(PROP_LIVE_CONFIG_MAX_OFFSET_MS)
+                    ? liveConfig.getInt(PROP_LIVE_CONFIG_MAX_OFFSET_MS) : maxOffsetMs;
+            minPlaybackSpeed = liveConfig.hasKey(PROP_LIVE_CONFIG_MIN_PLAYBACK_SPEED)
+                    ? (float) liveConfig.getDouble(PROP_LIVE_CONFIG_MIN_PLAYBACK_SPEED) : minPlaybackSpeed;
+            maxPlaybackSpeed = liveConfig.hasKey(PROP_LIVE_CONFIG_MAX_PLAYBACK_SPEED)
+                    ? (float) liveConfig.getDouble(PROP_LIVE_CONFIG_MAX_PLAYBACK_SPEED) : maxPlaybackSpeed;
+        }
+        videoView.setLiveConfiguration(targetOffsetMs, minOffsetMs, maxOffsetMs, minPlaybackSpeed, maxPlaybackSpeed);
+    }
+
     private boolean startsWithValidScheme(String uriString) {
         return uriString.startsWith("http://")
                 || uriString.startsWith("https://")
@@ -403,6 +524,23 @@ public class ReactExoplayerViewManager extends ViewGroupManager<ReactExoplayerVi
         return ResizeMode.RESIZE_MODE_FIT;
     }
 
+    /**
+     * toStringSet converts a {@link ReadableArray} of strings into a HashSet.
+     *
+     * @param readableArray The ReadableArray to be converted.
+     * @return A HashSet containing the strings of the ReadableArray, or null if there is no array.
+     */
+    public static Set<String> toStringSet(@Nullable ReadableArray readableArray) {
+        if (readableArray == null)
+            return null;
+
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < readableArray.size(); i++) {
+            result.add(readableArray.getString(i));
+        }
+        return result;
+    }
+
     /**
      * toStringMap converts a {@link ReadableMap} into a HashMap.
      *
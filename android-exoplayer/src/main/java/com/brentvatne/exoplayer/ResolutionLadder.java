@@ -0,0 +1,121 @@
+package com.brentvatne.exoplayer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The video tracks of a period sorted by height, for resolution based track selection.
+ *
+ * Tracks are identified by their position in the ladder, from the lowest to the highest height,
+ * tracks of the same height being sorted by bitrate. This class only depends on the JDK so it can
+ * be exercised outside of Android.
+ */
+final class ResolutionLadder {
+
+    static final int NOT_FOUND = -1;
+
+    private final int[] heights;
+    private final int[] bitrates;
+    private final int[] groupIndexes;
+    private final int[] trackIndexes;
+    /** Position of the first track, in the original order, of each height. */
+    private final Map<Integer, Integer> exactPositions;
+
+    /**
+     * All arrays have one element per track, in the order of the track groups.
+     */
+    ResolutionLadder(int[] heights, int[] bitrates, int[] groupIndexes, int[] trackIndexes) {
+        int count = heights.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        final int[] unsortedHeights = heights;
+        final int[] unsortedBitrates = bitrates;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (unsortedHeights[a] != unsortedHeights[b]) {
+                    return unsortedHeights[a] < unsortedHeights[b] ? -1 : 1;
+                }
+                return unsortedBitrates[a] < unsortedBitrates[b] ? -1 : (unsortedBitrates[a] == unsortedBitrates[b] ? 0 : 1);
+            }
+        });
+
+        this.heights = new int[count];
+        this.bitrates = new int[count];
+        this.groupIndexes = new int[count];
+        this.trackIndexes = new int[count];
+        int[] positions = new int[count];
+        for (int position = 0; position < count; position++) {
+            int i = order[position];
+            this.heights[position] = heights[i];
+            this.bitrates[position] = bitrates[i];
+            this.groupIndexes[position] = groupIndexes[i];
+            this.trackIndexes[position] = trackIndexes[i];
+            positions[i] = position;
+        }
+        exactPositions = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (!exactPositions.containsKey(heights[i])) {
+                exactPositions.put(heights[i], positions[i]);
+            }
+        }
+    }
+
+    int size() {
+        return heights.length;
+    }
+
+    int getHeight(int position) {
+        return heights[position];
+    }
+
+    int getBitrate(int position) {
+        return bitrates[position];
+    }
+
+    int getGroupIndex(int position) {
+        return groupIndexes[position];
+    }
+
+    int getTrackIndex(int position) {
+        return trackIndexes[position];
+    }
+
+    /**
+     * @return The position of the first track with exactly this height, or {@link #NOT_FOUND}.
+     */
+    int findExact(int height) {
+        Integer position = exactPositions.get(height);
+        return position != null ? position : NOT_FOUND;
+    }
+
+    /**
+     * @return The position of the best track lower than this height, i.e. the highest one and
+     *     among those the one with the highest bitrate, or {@link #NOT_FOUND}.
+     */
+    int findClosestBelow(int height) {
+        // Binary search of the first track that is not lower than the height
+        int low = 0;
+        int high = heights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (heights[middle] < height) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low > 0 ? low - 1 : NOT_FOUND;
+    }
+
+    /**
+     * @return The position of the lowest track, or {@link #NOT_FOUND} if the ladder is empty.
+     */
+    int findLowest() {
+        return heights.length > 0 ? 0 : NOT_FOUND;
+    }
+}
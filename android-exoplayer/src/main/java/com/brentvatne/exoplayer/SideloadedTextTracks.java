@@ -0,0 +1,313 @@
+package com.brentvatne.exoplayer;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.SubtitleDecoder;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import com.google.android.exoplayer2.text.SubtitleDecoderFactory;
+import com.google.android.exoplayer2.text.SubtitleInputBuffer;
+import com.google.android.exoplayer2.text.SubtitleOutputBuffer;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders the text tracks passed through the {@code textTracks} prop outside of the player.
+ *
+ * Sideloaded tracks used to be merged into the media source, which downloaded and parsed every
+ * one of them whenever the source was prepared. Here only the selected track is fetched and
+ * parsed, on a background thread, and its cues are pushed to the subtitle view following the
+ * playback position. Parsed subtitles are cached by URI so switching back to a language, or
+ * reloading the source, does not fetch it again.
+ *
+ * All methods must be called from the main thread.
+ */
+final class SideloadedTextTracks {
+
+    private static final String TAG = "SideloadedTextTracks";
+    private static final int MAX_CACHED_SUBTITLES = 8;
+    /** Upper bound between two cue updates, so drifts from the playback clock are corrected. */
+    private static final long MAX_UPDATE_INTERVAL_MS = 1000;
+    private static final long DECODE_POLL_INTERVAL_MS = 5;
+    private static final long DECODE_TIMEOUT_MS = 10 * 1000;
+
+    /** Shared by every player, the same subtitle files are often used by several sources. */
+    private static final LruCache<String, Subtitle> subtitleCache = new LruCache<>(MAX_CACHED_SUBTITLES);
+
+    interface Output {
+        void onCues(List<Cue> cues);
+    }
+
+    static final class Track {
+        final String title;
+        final String language;
+        final String mimeType;
+        final Uri uri;
+
+        Track(String title, String language, String mimeType, Uri uri) {
+            this.title = title;
+            this.language = language;
+            this.mimeType = mimeType;
+            this.uri = uri;
+        }
+    }
+
+    private final Output output;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable updateCues = new Runnable() {
+        @Override
+        public void run() {
+            invalidate();
+        }
+    };
+
+    private List<Track> tracks = Collections.emptyList();
+    private Player player;
+    private int selectedIndex = C.INDEX_UNSET;
+    private Subtitle subtitle;
+    private boolean hasCues;
+    /** Incremented on every selection so that results of outdated loads are dropped. */
+    private int selectionId;
+
+    SideloadedTextTracks(Output output) {
+        this.output = output;
+    }
+
+    /**
+     * Replaces the list of tracks. The selected track stays selected, without being loaded again,
+     * when the new list still contains its URI.
+     */
+    void setTracks(List<Track> tracks) {
+        Uri selectedUri = selectedIndex != C.INDEX_UNSET ? this.tracks.get(selectedIndex).uri : null;
+        this.tracks = tracks != null ? tracks : Collections.<Track>emptyList();
+        if (selectedUri == null) {
+            return;
+        }
+        for (int i = 0; i < this.tracks.size(); i++) {
+            if (selectedUri.equals(this.tracks.get(i).uri)) {
+                selectedIndex = i;
+                return;
+            }
+        }
+        deselect();
+    }
+
+    List<Track> getTracks() {
+        return tracks;
+    }
+
+    int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    /**
+     * Sets the player whose position drives the cues, or null when the player is released.
+     */
+    void setPlayer(Player player) {
+        this.player = player;
+        invalidate();
+    }
+
+    void select(int index, DataSource.Factory dataSourceFactory) {
+        if (index == selectedIndex || index < 0 || index >= tracks.size()) {
+            return;
+        }
+        selectedIndex = index;
+        subtitle = null;
+        final int id = ++selectionId;
+        final Track track = tracks.get(index);
+        final String key = track.uri.toString();
+        Subtitle cached = subtitleCache.get(key);
+        if (cached != null) {
+            subtitle = cached;
+            invalidate();
+            return;
+        }
+        invalidate();
+        if (dataSourceFactory == null || executor.isShutdown()) {
+            return;
+        }
+        final DataSource dataSource = dataSourceFactory.createDataSource();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Subtitle loaded = load(track, dataSource);
+                if (loaded == null) {
+                    return;
+                }
+                subtitleCache.put(key, loaded);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (id == selectionId) {
+                            subtitle = loaded;
+                            invalidate();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    void deselect() {
+        if (selectedIndex == C.INDEX_UNSET) {
+            return;
+        }
+        selectedIndex = C.INDEX_UNSET;
+        subtitle = null;
+        selectionId++;
+        invalidate();
+    }
+
+    /**
+     * Updates the cues for the current position. Must be called when the position jumps or when
+     * the playback speed or state changes, otherwise the cues only follow the position while
+     * playing.
+     */
+    void invalidate() {
+        handler.removeCallbacks(updateCues);
+        if (subtitle == null || player == null) {
+            if (hasCues) {
+                hasCues = false;
+                output.onCues(Collections.<Cue>emptyList());
+            }
+            return;
+        }
+        long positionUs = C.msToUs(player.getCurrentPosition());
+        List<Cue> cues = subtitle.getCues(positionUs);
+        hasCues = !cues.isEmpty();
+        output.onCues(cues);
+        if (!player.isPlaying()) {
+            return;
+        }
+        long delayMs = MAX_UPDATE_INTERVAL_MS;
+        int nextEventIndex = subtitle.getNextEventTimeIndex(positionUs);
+        if (nextEventIndex != C.INDEX_UNSET) {
+            float speed = player.getPlaybackParameters().speed;
+            long untilNextEventMs = C.usToMs(subtitle.getEventTime(nextEventIndex) - positionUs);
+            delayMs = Math.min(delayMs, (long) (untilNextEventMs / (speed > 0 ? speed : 1f)));
+        }
+        handler.postDelayed(updateCues, Math.max(0, delayMs));
+    }
+
+    void release() {
+        handler.removeCallbacks(updateCues);
+        executor.shutdownNow();
+        player = null;
+    }
+
+    private static Subtitle load(Track track, DataSource dataSource) {
+        DataSourceInputStream inputStream = new DataSourceInputStream(dataSource, new DataSpec(track.uri));
+        try {
+            byte[] data = Util.toByteArray(inputStream);
+            return decode(track, data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to load text track " + track.uri + ": " + e.toString());
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+        return null;
+    }
+
+    private static Subtitle decode(Track track, byte[] data) throws SubtitleDecoderException, InterruptedException {
+        Format format = new Format.Builder()
+                .setId(track.title)
+                .setSampleMimeType(track.mimeType)
+                .setLanguage(track.language)
+                .build();
+        if (!SubtitleDecoderFactory.DEFAULT.supportsFormat(format)) {
+            throw new SubtitleDecoderException("Unsupported text track type: " + track.mimeType);
+        }
+        SubtitleDecoder decoder = SubtitleDecoderFactory.DEFAULT.createDecoder(format);
+        try {
+            SubtitleInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+            inputBuffer.ensureSpaceForWrite(data.length);
+            inputBuffer.data.put(data);
+            inputBuffer.flip();
+            inputBuffer.timeUs = 0;
+            inputBuffer.subsampleOffsetUs = 0;
+            decoder.queueInputBuffer(inputBuffer);
+            // The decoder works on its own thread, wait for the whole file to be parsed
+            long deadlineMs = SystemClock.elapsedRealtime() + DECODE_TIMEOUT_MS;
+            SubtitleOutputBuffer outputBuffer;
+            while ((outputBuffer = decoder.dequeueOutputBuffer()) == null) {
+                if (SystemClock.elapsedRealtime() > deadlineMs) {
+                    throw new SubtitleDecoderException("Timed out decoding text track " + track.uri);
+                }
+                Thread.sleep(DECODE_POLL_INTERVAL_MS);
+            }
+            try {
+                // The output buffer belongs to the decoder, its cues are copied out before both are
+                // released
+                return new CopiedSubtitle(outputBuffer);
+            } finally {
+                outputBuffer.release();
+            }
+        } finally {
+            decoder.release();
+        }
+    }
+
+    /**
+     * A {@link Subtitle} holding the cues of every event, independent of the decoder that parsed
+     * them.
+     */
+    private static final class CopiedSubtitle implements Subtitle {
+
+        private final long[] eventTimesUs;
+        private final List<List<Cue>> cues;
+
+        CopiedSubtitle(Subtitle subtitle) {
+            int eventTimeCount = subtitle.getEventTimeCount();
+            eventTimesUs = new long[eventTimeCount];
+            cues = new ArrayList<>(eventTimeCount);
+            for (int i = 0; i < eventTimeCount; i++) {
+                eventTimesUs[i] = subtitle.getEventTime(i);
+                // The cues only change at the event times
+                cues.add(new ArrayList<>(subtitle.getCues(eventTimesUs[i])));
+            }
+        }
+
+        @Override
+        public int getNextEventTimeIndex(long timeUs) {
+            int index = Util.binarySearchCeil(eventTimesUs, timeUs, false, false);
+            return index < eventTimesUs.length ? index : C.INDEX_UNSET;
+        }
+
+        @Override
+        public int getEventTimeCount() {
+            return eventTimesUs.length;
+        }
+
+        @Override
+        public long getEventTime(int index) {
+            return eventTimesUs[index];
+        }
+
+        @Override
+        public List<Cue> getCues(long timeUs) {
+            int index = Util.binarySearchFloor(eventTimesUs, timeUs, true, false);
+            return index == -1 ? Collections.<Cue>emptyList() : cues.get(index);
+        }
+    }
+}
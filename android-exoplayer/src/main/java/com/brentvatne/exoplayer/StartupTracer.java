@@ -0,0 +1,229 @@
+package com.brentvatne.exoplayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each phase of the startup of a source takes, from the initialization request
+ * to the first rendered frame.
+ *
+ * A session is started for every source. Phases are spans opened and closed by name, possibly on
+ * different threads, with monotonic timestamps relative to the start of the session. Counters
+ * record what the startup cost besides time, e.g. the number of requests. Calls made
+ * while no session is running are ignored, so the tracer can be left in the startup path at no
+ * cost. All methods are thread safe.
+ */
+final class StartupTracer {
+
+    static final String PHASE_PLAYER_CORE = "initializePlayerCore";
+    static final String PHASE_DRM = "initializePlayerDrm";
+    /** From the DRM session manager being built to the main thread picking the source up. */
+    static final String PHASE_MAIN_THREAD_HOP = "mainThreadHop";
+    static final String PHASE_SOURCE = "initializePlayerSource";
+    /** From the player being prepared to its first {@code STATE_READY}. */
+    static final String PHASE_PREPARE = "prepare";
+    /** From the player being prepared to its first rendered frame. */
+    static final String PHASE_FIRST_FRAME = "firstFrame";
+
+    /** Loads started by the player, each one being an HTTP request for network sources. */
+    static final String COUNTER_REQUESTS = "requests";
+    static final String COUNTER_MANIFEST_REQUESTS = "manifestRequests";
+    static final String COUNTER_BYTES_LOADED = "bytesLoaded";
+
+    static final class Span {
+        final String name;
+        final String threadName;
+        final long threadId;
+        /** Nanoseconds since the start of the session. */
+        final long startNs;
+        long endNs = -1;
+
+        Span(String name, Thread thread, long startNs) {
+            this.name = name;
+            this.threadName = thread.getName();
+            this.threadId = thread.getId();
+            this.startNs = startNs;
+        }
+
+        long getDurationNs() {
+            return endNs - startNs;
+        }
+    }
+
+    /** The phases of a finished session. */
+    static final class Trace {
+        final long totalNs;
+        /** The closed spans, by start time. */
+        final List<Span> spans;
+        final Map<String, Long> counters;
+
+        Trace(long totalNs, List<Span> spans, Map<String, Long> counters) {
+            this.totalNs = totalNs;
+            this.spans = spans;
+            this.counters = counters;
+        }
+
+        /**
+         * @return The end of the last span of this phase since the start of the session, or -1 if
+         *     there is none.
+         */
+        long getEndNs(String phase) {
+            for (int i = spans.size() - 1; i >= 0; i--) {
+                if (spans.get(i).name.equals(phase)) {
+                    return spans.get(i).endNs;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return The trace in the Chrome trace event format, which can be opened in
+         *     chrome://tracing or Perfetto.
+         */
+        String toChromeTraceJson() {
+            StringBuilder json = new StringBuilder("{\"traceEvents\":[");
+            List<Long> namedThreads = new ArrayList<>();
+            for (int i = 0; i < spans.size(); i++) {
+                Span span = spans.get(i);
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"name\":");
+                appendString(json, span.name);
+                json.append(",\"cat\":\"startup\",\"ph\":\"X\",\"pid\":0,\"tid\":").append(span.threadId)
+                        .append(",\"ts\":").append(span.startNs / 1000)
+                        .append(",\"dur\":").append(span.getDurationNs() / 1000)
+                        .append('}');
+                if (!namedThreads.contains(span.threadId)) {
+                    namedThreads.add(span.threadId);
+                    json.append(",{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":0,\"tid\":").append(span.threadId)
+                            .append(",\"args\":{\"name\":");
+                    appendString(json, span.threadName);
+                    json.append("}}");
+                }
+            }
+            json.append("],\"displayTimeUnit\":\"ms\",\"otherData\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendString(json, counter.getKey());
+                json.append(':').append(counter.getValue());
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+
+    private final List<Span> spans = new ArrayList<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private boolean active;
+    private long originNs;
+
+    /**
+     * Starts a new session, dropping the current one if any.
+     */
+    synchronized void start() {
+        spans.clear();
+        counters.clear();
+        active = true;
+        originNs = System.nanoTime();
+    }
+
+    synchronized boolean isActive() {
+        return active;
+    }
+
+    synchronized void begin(String phase) {
+        if (active) {
+            spans.add(new Span(phase, Thread.currentThread(), System.nanoTime() - originNs));
+        }
+    }
+
+    /**
+     * Closes the last span opened for this phase, if it is still open.
+     */
+    synchronized void end(String phase) {
+        if (!active) {
+            return;
+        }
+        for (int i = spans.size() - 1; i >= 0; i--) {
+            Span span = spans.get(i);
+            if (span.name.equals(phase)) {
+                if (span.endNs == -1) {
+                    span.endNs = System.nanoTime() - originNs;
+                }
+                return;
+            }
+        }
+    }
+
+    synchronized void count(String counter, long delta) {
+        if (active) {
+            Long value = counters.get(counter);
+            counters.put(counter, (value != null ? value : 0) + delta);
+        }
+    }
+
+    synchronized boolean hasEnded(String phase) {
+        for (int i = spans.size() - 1; i >= 0; i--) {
+            Span span = spans.get(i);
+            if (span.name.equals(phase)) {
+                return span.endNs != -1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ends the session. Spans that are still open are dropped.
+     *
+     * @return The trace of the session, or null if no session is running.
+     */
+    synchronized Trace finish() {
+        if (!active) {
+            return null;
+        }
+        active = false;
+        long totalNs = System.nanoTime() - originNs;
+        List<Span> closedSpans = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.endNs != -1) {
+                closedSpans.add(span);
+            }
+        }
+        spans.clear();
+        Map<String, Long> finalCounters = new LinkedHashMap<>(counters);
+        counters.clear();
+        return new Trace(totalNs, Collections.unmodifiableList(closedSpans),
+                Collections.unmodifiableMap(finalCounters));
+    }
+
+    /**
+     * Drops the current session, e.g. when the startup fails or is abandoned.
+     */
+    synchronized void cancel() {
+        active = false;
+        spans.clear();
+        counters.clear();
+    }
+}
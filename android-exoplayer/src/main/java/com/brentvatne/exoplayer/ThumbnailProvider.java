@@ -0,0 +1,333 @@
+package com.brentvatne.exoplayer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.DashSegmentIndex;
+import com.google.android.exoplayer2.source.dash.DashUtil;
+import com.google.android.exoplayer2.source.dash.manifest.AdaptationSet;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.Descriptor;
+import com.google.android.exoplayer2.source.dash.manifest.Period;
+import com.google.android.exoplayer2.source.dash.manifest.Representation;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceInputStream;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves seek bar thumbnails from tiled images (sprite sheets).
+ *
+ * Sheets either come from the {@code thumbnails} prop or from the image adaptation sets of a DASH
+ * manifest. They are fetched on demand on a background thread, outside of the player's loaders so
+ * the playback buffer is not affected, and decoded sheets are kept in a bounded LRU cache. Bitmaps
+ * evicted from the cache are reused to decode the next sheets.
+ */
+final class ThumbnailProvider {
+
+    private static final String TAG = "ThumbnailProvider";
+    private static final String DASH_THUMBNAIL_TILE_SCHEME = "http://dashif.org/thumbnail_tile";
+    private static final String DASH_THUMBNAIL_TILE_SCHEME_LEGACY = "http://dashif.org/guidelines/thumbnail_tile";
+    private static final int MAX_POOLED_BITMAPS = 2;
+
+    interface Callback {
+        /**
+         * Called on the main thread.
+         *
+         * @param thumbnail The thumbnail, or null when there is none for the requested position.
+         */
+        void onThumbnail(@Nullable Bitmap thumbnail);
+    }
+
+    static final class TileSheet {
+        final Uri uri;
+        final long startMs;
+        final long durationMs;
+        final int columns;
+        final int rows;
+
+        TileSheet(Uri uri, long startMs, long durationMs, int columns, int rows) {
+            this.uri = uri;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.columns = Math.max(1, columns);
+            this.rows = Math.max(1, rows);
+        }
+
+        boolean contains(long positionMs) {
+            return positionMs >= startMs && positionMs < startMs + durationMs;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Bitmap> bitmapPool = new ArrayList<>();
+    private final LruCache<String, Bitmap> sheetCache;
+
+    private DataSource.Factory dataSourceFactory;
+    private List<TileSheet> sheets = new ArrayList<>();
+    private Uri dashManifestUri;
+    private boolean dashManifestLoaded;
+
+    ThumbnailProvider() {
+        int maxCacheBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        sheetCache = new LruCache<String, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) {
+                    recycleIntoPool(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Uses explicit sprite sheets, this takes precedence over the thumbnails of a DASH manifest.
+     */
+    synchronized void setSheets(List<TileSheet> sheets, DataSource.Factory dataSourceFactory) {
+        this.sheets = sheets != null ? sheets : new ArrayList<TileSheet>();
+        this.dataSourceFactory = dataSourceFactory;
+        this.dashManifestUri = null;
+        sheetCache.evictAll();
+    }
+
+    /**
+     * Reads the sheets from the image adaptation sets of a DASH manifest. The manifest is only
+     * loaded when the first thumbnail is requested.
+     */
+    synchronized void setDashManifest(Uri manifestUri, DataSource.Factory dataSourceFactory) {
+        this.sheets = new ArrayList<>();
+        this.dataSourceFactory = dataSourceFactory;
+        this.dashManifestUri = manifestUri;
+        this.dashManifestLoaded = false;
+        sheetCache.evictAll();
+    }
+
+    synchronized void clear() {
+        sheets = new ArrayList<>();
+        dashManifestUri = null;
+        sheetCache.evictAll();
+    }
+
+    void getThumbnail(final long positionMs, final Callback callback) {
+        if (executor.isShutdown()) {
+            callback.onThumbnail(null);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap thumbnail = loadThumbnail(positionMs);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onThumbnail(thumbnail);
+                    }
+                });
+            }
+        });
+    }
+
+    void release() {
+        executor.shutdownNow();
+        synchronized (this) {
+            sheetCache.evictAll();
+            bitmapPool.clear();
+        }
+    }
+
+    private Bitmap loadThumbnail(long positionMs) {
+        TileSheet sheet;
+        DataSource.Factory factory;
+        synchronized (this) {
+            if (dashManifestUri != null && !dashManifestLoaded) {
+                dashManifestLoaded = true;
+                sheets = loadDashSheets(dashManifestUri, dataSourceFactory);
+            }
+            sheet = findSheet(positionMs);
+            factory = dataSourceFactory;
+        }
+        if (sheet == null || factory == null) {
+            return null;
+        }
+        Bitmap sheetBitmap = getSheetBitmap(sheet, factory);
+        if (sheetBitmap == null) {
+            return null;
+        }
+
+        int tileCount = sheet.columns * sheet.rows;
+        long tileDurationMs = Math.max(1, sheet.durationMs / tileCount);
+        int tileIndex = (int) Math.min(tileCount - 1, (positionMs - sheet.startMs) / tileDurationMs);
+        int tileWidth = sheetBitmap.getWidth() / sheet.columns;
+        int tileHeight = sheetBitmap.getHeight() / sheet.rows;
+        int x = (tileIndex % sheet.columns) * tileWidth;
+        int y = (tileIndex / sheet.columns) * tileHeight;
+        synchronized (this) {
+            if (sheetBitmap.isRecycled()) {
+                return null;
+            }
+            return Bitmap.createBitmap(sheetBitmap, x, y, tileWidth, tileHeight);
+        }
+    }
+
+    private TileSheet findSheet(long positionMs) {
+        for (TileSheet sheet : sheets) {
+            if (sheet.contains(positionMs)) {
+                return sheet;
+            }
+        }
+        return null;
+    }
+
+    private Bitmap getSheetBitmap(TileSheet sheet, DataSource.Factory factory) {
+        String key = sheet.uri.toString();
+        Bitmap cached = sheetCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] data;
+        DataSourceInputStream inputStream = new DataSourceInputStream(factory.createDataSource(), new DataSpec(sheet.uri));
+        try {
+            data = Util.toByteArray(inputStream);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load thumbnail sheet " + key + ": " + e.toString());
+            return null;
+        } finally {
+            Util.closeQuietly(inputStream);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inBitmap = takeFromPool(options.outWidth, options.outHeight);
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be reused, decode into a new one
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (bitmap != null) {
+            sheetCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private synchronized Bitmap takeFromPool(int width, int height) {
+        if (Build.VERSION.SDK_INT < 19 || width <= 0 || height <= 0) {
+            return null;
+        }
+        int requiredBytes = width * height * 4;
+        for (int i = 0; i < bitmapPool.size(); i++) {
+            Bitmap candidate = bitmapPool.get(i);
+            if (candidate.getAllocationByteCount() >= requiredBytes) {
+                bitmapPool.remove(i);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void recycleIntoPool(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < 19 || !bitmap.isMutable()) {
+            return;
+        }
+        if (bitmapPool.size() >= MAX_POOLED_BITMAPS) {
+            bitmapPool.remove(0);
+        }
+        bitmapPool.add(bitmap);
+    }
+
+    private static List<TileSheet> loadDashSheets(Uri manifestUri, DataSource.Factory factory) {
+        List<TileSheet> result = new ArrayList<>();
+        if (factory == null) {
+            return result;
+        }
+        try {
+            DashManifest manifest = DashUtil.loadManifest(factory.createDataSource(), manifestUri);
+            for (int i = 0; i < manifest.getPeriodCount(); i++) {
+                Period period = manifest.getPeriod(i);
+                long periodDurationUs = manifest.getPeriodDurationUs(i);
+                for (AdaptationSet adaptation : period.adaptationSets) {
+                    int[] grid = getThumbnailGrid(adaptation);
+                    if (grid == null || adaptation.representations.isEmpty()) {
+                        continue;
+                    }
+                    // Use the smallest representation, thumbnails only need to fit a seek bar preview
+                    Representation representation = adaptation.representations.get(0);
+                    for (Representation candidate : adaptation.representations) {
+                        if (candidate.format.width > 0 && candidate.format.width < representation.format.width) {
+                            representation = candidate;
+                        }
+                    }
+                    DashSegmentIndex index = representation.getIndex();
+                    if (index == null) {
+                        continue;
+                    }
+                    long firstSegmentNum = index.getFirstSegmentNum();
+                    int segmentCount = index.getSegmentCount(periodDurationUs);
+                    if (segmentCount == DashSegmentIndex.INDEX_UNBOUNDED) {
+                        continue;
+                    }
+                    for (long segmentNum = firstSegmentNum; segmentNum < firstSegmentNum + segmentCount; segmentNum++) {
+                        long startMs = period.startMs + C.usToMs(index.getTimeUs(segmentNum));
+                        long durationMs = C.usToMs(index.getDurationUs(segmentNum, periodDurationUs));
+                        Uri uri = index.getSegmentUrl(segmentNum).resolveUri(representation.baseUrl);
+                        result.add(new TileSheet(uri, startMs, durationMs, grid[0], grid[1]));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read thumbnails from DASH manifest: " + e.toString());
+        }
+        return result;
+    }
+
+    /**
+     * @return The columns and rows of the tiles of an image adaptation set, or null if the
+     *     adaptation set does not contain thumbnails.
+     */
+    private static int[] getThumbnailGrid(AdaptationSet adaptation) {
+        List<Descriptor> descriptors = new ArrayList<>(adaptation.essentialProperties);
+        descriptors.addAll(adaptation.supplementalProperties);
+        for (Descriptor descriptor : descriptors) {
+            if (!DASH_THUMBNAIL_TILE_SCHEME.equals(descriptor.schemeIdUri)
+                    && !DASH_THUMBNAIL_TILE_SCHEME_LEGACY.equals(descriptor.schemeIdUri)) {
+                continue;
+            }
+            String[] grid = descriptor.value != null ? descriptor.value.split("x") : new String[0];
+            if (grid.length == 2) {
+                try {
+                    return new int[] {Integer.parseInt(grid[0].trim()), Integer.parseInt(grid[1].trim())};
+                } catch (NumberFormatException e) {
+                    // Fall back to a single tile per image
+                }
+            }
+            return new int[] {1, 1};
+        }
+        return null;
+    }
+}
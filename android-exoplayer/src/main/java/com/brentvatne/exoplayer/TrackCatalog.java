@@ -0,0 +1,82 @@
+package com.brentvatne.exoplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indexes the track groups of a renderer for the current period.
+ *
+ * Built once when the tracks change, it turns the track selection by language, title (format id)
+ * and resolution into lookups and backs the track lists reported to JS.
+ */
+final class TrackCatalog {
+
+    final TrackGroupArray groups;
+    private final Map<String, Integer> groupsByLanguage = new HashMap<>();
+    private final Map<String, Integer> groupsById = new HashMap<>();
+    private final ResolutionLadder ladder;
+
+    TrackCatalog(TrackGroupArray groups) {
+        this.groups = groups;
+        int trackCount = 0;
+        for (int i = 0; i < groups.length; i++) {
+            Format format = groups.get(i).getFormat(0);
+            // The first group wins, as when the groups were scanned in order
+            if (format.language != null && !groupsByLanguage.containsKey(format.language)) {
+                groupsByLanguage.put(format.language, i);
+            }
+            if (format.id != null && !groupsById.containsKey(format.id)) {
+                groupsById.put(format.id, i);
+            }
+            trackCount += groups.get(i).length;
+        }
+
+        int[] heights = new int[trackCount];
+        int[] bitrates = new int[trackCount];
+        int[] groupIndexes = new int[trackCount];
+        int[] trackIndexes = new int[trackCount];
+        int track = 0;
+        for (int i = 0; i < groups.length; i++) {
+            TrackGroup group = groups.get(i);
+            for (int j = 0; j < group.length; j++) {
+                Format format = group.getFormat(j);
+                heights[track] = format.height;
+                bitrates[track] = format.bitrate;
+                groupIndexes[track] = i;
+                trackIndexes[track] = j;
+                track++;
+            }
+        }
+        ladder = new ResolutionLadder(heights, bitrates, groupIndexes, trackIndexes);
+    }
+
+    int getGroupCount() {
+        return groups.length;
+    }
+
+    /**
+     * @return The format describing a group, i.e. its first format.
+     */
+    Format getGroupFormat(int groupIndex) {
+        return groups.get(groupIndex).getFormat(0);
+    }
+
+    int findGroupByLanguage(String language) {
+        Integer groupIndex = groupsByLanguage.get(language);
+        return groupIndex != null ? groupIndex : C.INDEX_UNSET;
+    }
+
+    int findGroupById(String id) {
+        Integer groupIndex = groupsById.get(id);
+        return groupIndex != null ? groupIndex : C.INDEX_UNSET;
+    }
+
+    ResolutionLadder getLadder() {
+        return ladder;
+    }
+}
@@ -8,6 +8,7 @@ import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.metadata.Metadata;
 import com.google.android.exoplayer2.metadata.emsg.EventMessage;
 import com.google.android.exoplayer2.metadata.id3.Id3Frame;
@@ -17,6 +18,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.io.StringWriter;
 import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
 
 class VideoEventEmitter {
 
@@ -33,7 +36,10 @@ class VideoEventEmitter {
     private static final String EVENT_ERROR = "onVideoError";
     private static final String EVENT_PROGRESS = "onVideoProgress";
     private static final String EVENT_BANDWIDTH = "onVideoBandwidthUpdate";
+    private static final String EVENT_NETWORK_STATS = "onVideoNetworkStats";
     private static final String EVENT_SEEK = "onVideoSeek";
+    private static final String EVENT_SEEK_SETTLED = "onVideoSeekSettled";
+    private static final String EVENT_STARTUP_TRACE = "onVideoStartupTrace";
     private static final String EVENT_END = "onVideoEnd";
     private static final String EVENT_FULLSCREEN_WILL_PRESENT = "onVideoFullscreenPlayerWillPresent";
     private static final String EVENT_FULLSCREEN_DID_PRESENT = "onVideoFullscreenPlayerDidPresent";
@@ -58,6 +64,8 @@ class VideoEventEmitter {
             EVENT_ERROR,
             EVENT_PROGRESS,
             EVENT_SEEK,
+            EVENT_SEEK_SETTLED,
+            EVENT_STARTUP_TRACE,
             EVENT_END,
             EVENT_FULLSCREEN_WILL_PRESENT,
             EVENT_FULLSCREEN_DID_PRESENT,
@@ -75,6 +83,7 @@ class VideoEventEmitter {
             EVENT_AUDIO_FOCUS_CHANGE,
             EVENT_PLAYBACK_RATE_CHANGE,
             EVENT_BANDWIDTH,
+            EVENT_NETWORK_STATS,
     };
 
     @Retention(RetentionPolicy.SOURCE)
@@ -84,6 +93,8 @@ class VideoEventEmitter {
             EVENT_ERROR,
             EVENT_PROGRESS,
             EVENT_SEEK,
+            EVENT_SEEK_SETTLED,
+            EVENT_STARTUP_TRACE,
             EVENT_END,
             EVENT_FULLSCREEN_WILL_PRESENT,
             EVENT_FULLSCREEN_DID_PRESENT,
@@ -101,6 +112,7 @@ class VideoEventEmitter {
             EVENT_AUDIO_FOCUS_CHANGE,
             EVENT_PLAYBACK_RATE_CHANGE,
             EVENT_BANDWIDTH,
+            EVENT_NETWORK_STATS,
     })
     @interface VideoEvents {
     }
@@ -119,6 +131,7 @@ class VideoEventEmitter {
     private static final String EVENT_PROP_SEEKABLE_DURATION = "seekableDuration";
     private static final String EVENT_PROP_CURRENT_TIME = "currentTime";
     private static final String EVENT_PROP_CURRENT_PLAYBACK_TIME = "currentPlaybackTime";
+    private static final String EVENT_PROP_CURRENT_LIVE_OFFSET = "currentLiveOffset";
     private static final String EVENT_PROP_SEEK_TIME = "seekTime";
     private static final String EVENT_PROP_NATURAL_SIZE = "naturalSize";
     private static final String EVENT_PROP_TRACK_ID = "trackId";
@@ -144,6 +157,32 @@ class VideoEventEmitter {
 
     private static final String EVENT_PROP_IS_PLAYING = "isPlaying";
 
+    private static final String EVENT_PROP_TOTAL_DURATION = "totalDuration";
+    private static final String EVENT_PROP_PHASES = "phases";
+    private static final String EVENT_PROP_NAME = "name";
+    private static final String EVENT_PROP_THREAD = "thread";
+    private static final String EVENT_PROP_START_TIME = "startTime";
+    private static final String EVENT_PROP_CHROME_TRACE = "chromeTrace";
+    private static final String EVENT_PROP_READY_TIME = "readyTime";
+    private static final String EVENT_PROP_COUNTERS = "counters";
+
+    private static final String EVENT_PROP_REQUESTS = "requests";
+    private static final String EVENT_PROP_HOST = "host";
+    private static final String EVENT_PROP_TYPE = "type";
+    private static final String EVENT_PROP_REQUEST_COUNT = "count";
+    private static final String EVENT_PROP_FAILURES = "failures";
+    private static final String EVENT_PROP_REUSED_CONNECTIONS = "reusedConnections";
+    private static final String EVENT_PROP_BYTES = "bytes";
+    private static final String EVENT_PROP_DNS = "dns";
+    private static final String EVENT_PROP_CONNECT = "connect";
+    private static final String EVENT_PROP_TLS = "tls";
+    private static final String EVENT_PROP_TIME_TO_FIRST_BYTE = "timeToFirstByte";
+    private static final String EVENT_PROP_THROUGHPUT = "throughput";
+    private static final String EVENT_PROP_MEAN = "mean";
+    private static final String EVENT_PROP_MAX = "max";
+    private static final String EVENT_PROP_BOUNDS = "bounds";
+    private static final String EVENT_PROP_COUNTS = "counts";
+
     void setViewId(int viewId) {
         this.viewId = viewId;
     }
@@ -184,12 +223,19 @@ class VideoEventEmitter {
         receiveEvent(EVENT_LOAD, event);
     }
 
-    void progressChanged(double currentPosition, double bufferedDuration, double seekableDuration, double currentPlaybackTime) {
+    /**
+     * @param liveOffset The offset from the live edge in milliseconds, {@link C#TIME_UNSET} if the
+     *     source is not live.
+     */
+    void progressChanged(double currentPosition, double bufferedDuration, double seekableDuration, double currentPlaybackTime, long liveOffset) {
         WritableMap event = Arguments.createMap();
         event.putDouble(EVENT_PROP_CURRENT_TIME, currentPosition / 1000D);
         event.putDouble(EVENT_PROP_PLAYABLE_DURATION, bufferedDuration / 1000D);
         event.putDouble(EVENT_PROP_SEEKABLE_DURATION, seekableDuration / 1000D);
         event.putDouble(EVENT_PROP_CURRENT_PLAYBACK_TIME, currentPlaybackTime);
+        if (liveOffset != C.TIME_UNSET) {
+            event.putDouble(EVENT_PROP_CURRENT_LIVE_OFFSET, liveOffset / 1000D);
+        }
         receiveEvent(EVENT_PROGRESS, event);
     }
 
@@ -202,6 +248,55 @@ class VideoEventEmitter {
         receiveEvent(EVENT_BANDWIDTH, event);
     }    
 
+    void networkStats(List<MediaNetworkStats.Entry> entries) {
+        receiveEvent(EVENT_NETWORK_STATS, networkStatsToMap(entries));
+    }
+
+    /**
+     * Also resolves {@code VideoManager.getNetworkStats}, so that the event and the query have the
+     * same shape.
+     */
+    static WritableMap networkStatsToMap(List<MediaNetworkStats.Entry> entries) {
+        WritableArray requests = Arguments.createArray();
+        for (MediaNetworkStats.Entry entry : entries) {
+            WritableMap map = Arguments.createMap();
+            map.putString(EVENT_PROP_HOST, entry.host);
+            map.putString(EVENT_PROP_TYPE, entry.type);
+            map.putDouble(EVENT_PROP_REQUEST_COUNT, entry.requests);
+            map.putDouble(EVENT_PROP_FAILURES, entry.failures);
+            map.putDouble(EVENT_PROP_REUSED_CONNECTIONS, entry.reusedConnections);
+            map.putDouble(EVENT_PROP_BYTES, entry.bytes);
+            map.putMap(EVENT_PROP_DNS, histogramToMap(entry.dnsMs));
+            map.putMap(EVENT_PROP_CONNECT, histogramToMap(entry.connectMs));
+            map.putMap(EVENT_PROP_TLS, histogramToMap(entry.tlsMs));
+            map.putMap(EVENT_PROP_TIME_TO_FIRST_BYTE, histogramToMap(entry.timeToFirstByteMs));
+            map.putMap(EVENT_PROP_DURATION, histogramToMap(entry.durationMs));
+            map.putMap(EVENT_PROP_THROUGHPUT, histogramToMap(entry.throughputKbps));
+            requests.pushMap(map);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putArray(EVENT_PROP_REQUESTS, requests);
+        return event;
+    }
+
+    private static WritableMap histogramToMap(MediaNetworkStats.Histogram histogram) {
+        WritableArray bounds = Arguments.createArray();
+        for (long bound : histogram.bounds) {
+            bounds.pushDouble(bound);
+        }
+        WritableArray counts = Arguments.createArray();
+        for (long count : histogram.counts) {
+            counts.pushDouble(count);
+        }
+        WritableMap map = Arguments.createMap();
+        map.putDouble(EVENT_PROP_REQUEST_COUNT, histogram.count);
+        map.putDouble(EVENT_PROP_MEAN, histogram.getMean());
+        map.putDouble(EVENT_PROP_MAX, histogram.max);
+        map.putArray(EVENT_PROP_BOUNDS, bounds);
+        map.putArray(EVENT_PROP_COUNTS, counts);
+        return map;
+    }
+
     void seek(long currentPosition, long seekTime) {
         WritableMap event = Arguments.createMap();
         event.putDouble(EVENT_PROP_CURRENT_TIME, currentPosition / 1000D);
@@ -209,6 +304,40 @@ class VideoEventEmitter {
         receiveEvent(EVENT_SEEK, event);
     }
 
+    void seekSettled(long currentPosition) {
+        WritableMap event = Arguments.createMap();
+        event.putDouble(EVENT_PROP_CURRENT_TIME, currentPosition / 1000D);
+        receiveEvent(EVENT_SEEK_SETTLED, event);
+    }
+
+    void startupTrace(StartupTracer.Trace trace, String chromeTrace) {
+        WritableArray phases = Arguments.createArray();
+        for (StartupTracer.Span span : trace.spans) {
+            WritableMap phase = Arguments.createMap();
+            phase.putString(EVENT_PROP_NAME, span.name);
+            phase.putString(EVENT_PROP_THREAD, span.threadName);
+            phase.putDouble(EVENT_PROP_START_TIME, span.startNs / 1000000D);
+            phase.putDouble(EVENT_PROP_DURATION, span.getDurationNs() / 1000000D);
+            phases.pushMap(phase);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putDouble(EVENT_PROP_TOTAL_DURATION, trace.totalNs / 1000000D);
+        event.putArray(EVENT_PROP_PHASES, phases);
+        long readyNs = trace.getEndNs(StartupTracer.PHASE_PREPARE);
+        if (readyNs != -1) {
+            event.putDouble(EVENT_PROP_READY_TIME, readyNs / 1000000D);
+        }
+        WritableMap counters = Arguments.createMap();
+        for (Map.Entry<String, Long> counter : trace.counters.entrySet()) {
+            counters.putDouble(counter.getKey(), counter.getValue());
+        }
+        event.putMap(EVENT_PROP_COUNTERS, counters);
+        if (chromeTrace != null) {
+            event.putString(EVENT_PROP_CHROME_TRACE, chromeTrace);
+        }
+        receiveEvent(EVENT_STARTUP_TRACE, event);
+    }
+
     void ready() {
         receiveEvent(EVENT_READY, null);
     }
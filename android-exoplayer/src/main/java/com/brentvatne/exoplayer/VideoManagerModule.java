@@ -0,0 +1,268 @@
+package com.brentvatne.exoplayer;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.view.View;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Dynamic;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.NativeViewHierarchyManager;
+import com.facebook.react.uimanager.UIBlock;
+import com.facebook.react.uimanager.UIManagerModule;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Imperative API of the video views, the Android counterpart of the iOS {@code VideoManager}.
+ * Every method receives the react tag of the view it applies to.
+ *
+ * Commands act on the player directly, without a render and a prop diff, and resolve their promise
+ * once applied, which waits for the player to be built. They do not update the props: a prop that
+ * is later changed wins over a command.
+ */
+public class VideoManagerModule extends ReactContextBaseJavaModule {
+
+    private static final String REACT_CLASS = "VideoManager";
+    private static final int THUMBNAIL_JPEG_QUALITY = 80;
+    /** A seek command that did not settle after this long is rejected, e.g. while the source stalls. */
+    private static final long SEEK_TIMEOUT_MS = 10000;
+
+    private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+
+    public VideoManagerModule(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    @Override
+    public String getName() {
+        return REACT_CLASS;
+    }
+
+    @ReactMethod
+    public void getThumbnail(final double time, final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.getThumbnail(Math.round(time * 1000d), new ThumbnailProvider.Callback() {
+                    @Override
+                    public void onThumbnail(Bitmap thumbnail) {
+                        if (thumbnail == null) {
+                            promise.reject("E_NO_THUMBNAIL", "No thumbnail available at " + time + "s");
+                            return;
+                        }
+                        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                        thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_JPEG_QUALITY, outputStream);
+                        WritableMap result = Arguments.createMap();
+                        result.putString("uri", "data:image/jpeg;base64,"
+                                + Base64.encodeToString(outputStream.toByteArray(), Base64.NO_WRAP));
+                        result.putInt("width", thumbnail.getWidth());
+                        result.putInt("height", thumbnail.getHeight());
+                        promise.resolve(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Resolves once no more seeks are pending, with the position the player settled at. Rejects if
+     * the seek is abandoned or does not settle in time.
+     */
+    @ReactMethod
+    public void seek(final double time, final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.onUserInteraction();
+                SeekCommand command = new SeekCommand(videoView, time, promise);
+                timeoutHandler.postDelayed(command, SEEK_TIMEOUT_MS);
+                videoView.seekTo(Math.round(time * 1000d), command);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void play(final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.onUserInteraction();
+                videoView.setPausedModifier(false);
+                videoView.runWhenCoreReady(resolveWhenRun(promise));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void pause(final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.onUserInteraction();
+                videoView.setPausedModifier(true);
+                videoView.runWhenCoreReady(resolveWhenRun(promise));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setRate(final double rate, final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.onUserInteraction();
+                videoView.setRateModifier((float) rate);
+                videoView.runWhenCoreReady(resolveWhenRun(promise));
+            }
+        });
+    }
+
+    /**
+     * @param kind The kind of track, {@code audio}, {@code text} or {@code video}.
+     * @param selection The track to select, as in the {@code selectedAudioTrack},
+     *     {@code selectedTextTrack} and {@code selectedVideoTrack} props.
+     */
+    @ReactMethod
+    public void selectTrack(final String kind, final ReadableMap selection, final int reactTag, final Promise promise) {
+        withVideoView(reactTag, promise, new VideoViewBlock() {
+            @Override
+            public void execute(ReactExoplayerView videoView) {
+                videoView.onUserInteraction();
+                String type = selection.hasKey("type") ? selection.getString("type") : null;
+                Dynamic value = selection.hasKey("value") ? selection.getDynamic("value") : null;
+                if ("audio".equals(kind)) {
+                    videoView.setSelectedAudioTrack(type, value);
+                } else if ("text".equals(kind)) {
+                    videoView.setSelectedTextTrack(type, value);
+                } else if ("video".equals(kind)) {
+                    videoView.setSelectedVideoTrack(type, value);
+                } else {
+                    promise.reject("E_INVALID_TRACK_KIND", "Unknown track kind " + kind);
+                    return;
+                }
+                videoView.runWhenTracksSelected(new ReactExoplayerView.TrackSelectionCallback() {
+                    @Override
+                    public void onTrackSelectionComplete(boolean applied) {
+                        if (applied) {
+                            promise.resolve(null);
+                        } else {
+                            promise.reject("E_SELECT_TRACK_ABANDONED",
+                                    "The " + kind + " track was not selected, the source changed or failed first");
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Resolves with the statistics of the media requests of every player, as in
+     * {@code onNetworkStats}.
+     */
+    @ReactMethod
+    public void getNetworkStats(final Promise promise) {
+        promise.resolve(VideoEventEmitter.networkStatsToMap(MediaNetworkStats.snapshot()));
+    }
+
+    @ReactMethod
+    public void resetNetworkStats(final Promise promise) {
+        MediaNetworkStats.reset();
+        promise.resolve(null);
+    }
+
+    /**
+     * Reloads the cookies of the media requests from the React Native cookie store, resolves once
+     * they are reloaded. To call after the app changed the cookies of a source that is playing.
+     */
+    @ReactMethod
+    public void refreshCookies(final Promise promise) {
+        DataSourceUtil.refreshCookies(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /**
+     * Settles the promise of a seek command once, when the seek completes or when it times out.
+     * Both run on the main thread.
+     */
+    private final class SeekCommand implements ReactExoplayerView.SeekCallback, Runnable {
+        private final ReactExoplayerView videoView;
+        private final double time;
+        private final Promise promise;
+        private boolean done;
+
+        SeekCommand(ReactExoplayerView videoView, double time, Promise promise) {
+            this.videoView = videoView;
+            this.time = time;
+            this.promise = promise;
+        }
+
+        @Override
+        public void onSeekComplete(boolean completed, long positionMs) {
+            if (done) {
+                return;
+            }
+            done = true;
+            timeoutHandler.removeCallbacks(this);
+            if (!completed) {
+                promise.reject("E_SEEK_ABANDONED", "The seek to " + time + "s was abandoned");
+                return;
+            }
+            WritableMap result = Arguments.createMap();
+            result.putDouble("currentTime", positionMs / 1000d);
+            promise.resolve(result);
+        }
+
+        @Override
+        public void run() {
+            if (done) {
+                return;
+            }
+            done = true;
+            videoView.removeSeekCallback(this);
+            promise.reject("E_SEEK_TIMEOUT", "The seek to " + time + "s did not settle in " + SEEK_TIMEOUT_MS + "ms");
+        }
+    }
+
+    /**
+     * @return An action resolving the promise, to queue after the command it completes.
+     */
+    private static Runnable resolveWhenRun(final Promise promise) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(null);
+            }
+        };
+    }
+
+    private interface VideoViewBlock {
+        void execute(ReactExoplayerView videoView);
+    }
+
+    private void withVideoView(final int reactTag, final Promise promise, final VideoViewBlock block) {
+        UIManagerModule uiManager = getReactApplicationContext().getNativeModule(UIManagerModule.class);
+        uiManager.addUIBlock(new UIBlock() {
+            @Override
+            public void execute(NativeViewHierarchyManager nativeViewHierarchyManager) {
+                View view = nativeViewHierarchyManager.resolveView(reactTag);
+                if (!(view instanceof ReactExoplayerView)) {
+                    promise.reject("E_INVALID_VIEW", "No video view found for tag " + reactTag);
+                    return;
+                }
+                block.execute((ReactExoplayerView) view);
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+#!/usr/bin/env python3
+"""Generates the media of the startup regression tests in resources/startup.
+
+Each source is 3 segments of 2 seconds of AAC LC audio, 44.1 kHz mono, or 6 seconds of PCM for the
+progressive one. The AAC frames are silent: the tests decode them with a pass-through codec, only
+their framing matters. Run it again after changing the fixtures, the output is deterministic.
+"""
+
+import math
+import os
+import struct
+
+OUTPUT = os.path.join(os.path.dirname(os.path.abspath(__file__)), 'resources', 'startup')
+
+SAMPLE_RATE = 44100
+SAMPLES_PER_FRAME = 1024
+FRAMES_PER_SEGMENT = 86
+SEGMENT_COUNT = 3
+# A silent raw AAC LC mono frame
+SILENT_FRAME = bytes([0x21, 0x00, 0x49, 0x90, 0x02, 0x19, 0x00, 0x23, 0x80])
+# AAC LC, 44.1 kHz, mono
+AUDIO_SPECIFIC_CONFIG = bytes([0x12, 0x08])
+
+SEGMENT_DURATION = FRAMES_PER_SEGMENT * SAMPLES_PER_FRAME
+
+
+def write(path, data):
+    path = os.path.join(OUTPUT, path)
+    os.makedirs(os.path.dirname(path), exist_ok=True)
+    mode = 'w' if isinstance(data, str) else 'wb'
+    with open(path, mode) as output:
+        output.write(data)
+
+
+# HLS: a multivariant playlist, a media playlist and packed audio segments
+
+def adts_frame(payload):
+    length = 7 + len(payload)
+    header = bytes([
+        0xFF, 0xF1,
+        0x50,
+        0x40 | ((length >> 11) & 0x03),
+        (length >> 3) & 0xFF,
+        ((length & 0x07) << 5) | 0x1F,
+        0xFC,
+    ])
+    return header + payload
+
+
+def syncsafe(value):
+    return bytes([(value >> 21) & 0x7F, (value >> 14) & 0x7F, (value >> 7) & 0x7F, value & 0x7F])
+
+
+def id3_timestamp(timestamp_90khz):
+    owner = b'com.apple.streaming.transportStreamTimestamp\x00'
+    frame_data = owner + struct.pack('>Q', timestamp_90khz)
+    frame = b'PRIV' + syncsafe(len(frame_data)) + b'\x00\x00' + frame_data
+    return b'ID3\x04\x00\x00' + syncsafe(len(frame)) + frame
+
+
+def generate_hls():
+    write('hls/multivariant.m3u8', '\n'.join([
+        '#EXTM3U',
+        '#EXT-X-VERSION:3',
+        '#EXT-X-STREAM-INF:BANDWIDTH=64000,CODECS="mp4a.40.2"',
+        'audio.m3u8',
+        '',
+    ]))
+    extinf = SEGMENT_DURATION / SAMPLE_RATE
+    lines = [
+        '#EXTM3U',
+        '#EXT-X-VERSION:3',
+        '#EXT-X-TARGETDURATION:2',
+        '#EXT-X-MEDIA-SEQUENCE:0',
+        '#EXT-X-PLAYLIST-TYPE:VOD',
+    ]
+    for index in range(SEGMENT_COUNT):
+        lines.append('#EXTINF:%.3f,' % extinf)
+        lines.append('segment%d.aac' % index)
+        timestamp = index * SEGMENT_DURATION * 90000 // SAMPLE_RATE
+        write('hls/segment%d.aac' % index,
+              id3_timestamp(timestamp) + adts_frame(SILENT_FRAME) * FRAMES_PER_SEGMENT)
+    lines.append('#EXT-X-ENDLIST')
+    lines.append('')
+    write('hls/audio.m3u8', '\n'.join(lines))
+
+
+# DASH: a static manifest, an fMP4 initialization segment and media segments
+
+def box(box_type, *payloads):
+    payload = b''.join(payloads)
+    return struct.pack('>I', 8 + len(payload)) + box_type + payload
+
+
+def full_box(box_type, version, flags, *payloads):
+    return box(box_type, struct.pack('>I', (version << 24) | flags), *payloads)
+
+
+UNITY_MATRIX = struct.pack('>9I', 0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000)
+
+
+def descriptor(tag, payload):
+    return bytes([tag, len(payload)]) + payload
+
+
+def esds():
+    decoder_specific_info = descriptor(0x05, AUDIO_SPECIFIC_CONFIG)
+    decoder_config = descriptor(0x04, bytes([0x40, 0x15]) + b'\x00\x00\x00'
+                                + struct.pack('>II', 64000, 64000) + decoder_specific_info)
+    sl_config = descriptor(0x06, b'\x02')
+    return full_box(b'esds', 0, 0, descriptor(0x03, b'\x00\x00\x00' + decoder_config + sl_config))
+
+
+def init_segment():
+    ftyp = box(b'ftyp', b'iso6', struct.pack('>I', 0), b'iso6', b'dash', b'mp41')
+    mvhd = full_box(b'mvhd', 0, 0,
+                    struct.pack('>IIII', 0, 0, 1000, 0),
+                    struct.pack('>IH', 0x00010000, 0x0100), b'\x00' * 10,
+                    UNITY_MATRIX, b'\x00' * 24, struct.pack('>I', 2))
+    tkhd = full_box(b'tkhd', 0, 0x000003,
+                    struct.pack('>IIIII', 0, 0, 1, 0, 0), b'\x00' * 8,
+                    struct.pack('>HHHH', 0, 0, 0x0100, 0), UNITY_MATRIX, struct.pack('>II', 0, 0))
+    mdhd = full_box(b'mdhd', 0, 0, struct.pack('>IIIIHH', 0, 0, SAMPLE_RATE, 0, 0x55C4, 0))
+    hdlr = full_box(b'hdlr', 0, 0, struct.pack('>I', 0), b'soun', b'\x00' * 12, b'SoundHandler\x00')
+    mp4a = box(b'mp4a', b'\x00' * 6, struct.pack('>H', 1), b'\x00' * 8,
+               struct.pack('>HHHHI', 1, 16, 0, 0, SAMPLE_RATE << 16), esds())
+    stbl = box(b'stbl',
+               full_box(b'stsd', 0, 0, struct.pack('>I', 1), mp4a),
+               full_box(b'stts', 0, 0, struct.pack('>I', 0)),
+               full_box(b'stsc', 0, 0, struct.pack('>I', 0)),
+               full_box(b'stsz', 0, 0, struct.pack('>II', 0, 0)),
+               full_box(b'stco', 0, 0, struct.pack('>I', 0)))
+    dinf = box(b'dinf', full_box(b'dref', 0, 0, struct.pack('>I', 1), full_box(b'url ', 0, 1)))
+    minf = box(b'minf', full_box(b'smhd', 0, 0, struct.pack('>HH', 0, 0)), dinf, stbl)
+    trak = box(b'trak', tkhd, box(b'mdia', mdhd, hdlr, minf))
+    mvex = box(b'mvex', full_box(b'trex', 0, 0, struct.pack('>IIIII', 1, 1, SAMPLES_PER_FRAME, 0, 0)))
+    return ftyp + box(b'moov', mvhd, trak, mvex)
+
+
+def media_segment(index):
+    samples = [SILENT_FRAME] * FRAMES_PER_SEGMENT
+
+    def moof(data_offset):
+        trun = full_box(b'trun', 0, 0x000201,
+                        struct.pack('>Ii', len(samples), data_offset),
+                        b''.join(struct.pack('>I', len(sample)) for sample in samples))
+        traf = box(b'traf',
+                   full_box(b'tfhd', 0, 0x020000, struct.pack('>I', 1)),
+                   full_box(b'tfdt', 1, 0, struct.pack('>Q', index * SEGMENT_DURATION)),
+                   trun)
+        return box(b'moof', full_box(b'mfhd', 0, 0, struct.pack('>I', index + 1)), traf)
+
+    moof_size = len(moof(0))
+    return moof(moof_size + 8) + box(b'mdat', b''.join(samples))
+
+
+def generate_dash():
+    duration = SEGMENT_COUNT * SEGMENT_DURATION / SAMPLE_RATE
+    write('dash/manifest.mpd', '\n'.join([
+        '<?xml version="1.0" encoding="UTF-8"?>',
+        '<MPD xmlns="urn:mpeg:dash:schema:mpd:2011" type="static" minBufferTime="PT1S"'
+        ' mediaPresentationDuration="PT%.3fS" profiles="urn:mpeg:dash:profile:isoff-live:2011">' % duration,
+        '  <Period id="0" start="PT0S">',
+        '    <AdaptationSet contentType="audio" mimeType="audio/mp4" segmentAlignment="true">',
+        '      <Representation id="audio" codecs="mp4a.40.2" bandwidth="64000"'
+        ' audioSamplingRate="%d">' % SAMPLE_RATE,
+        '        <SegmentTemplate timescale="%d" initialization="init.mp4"'
+        ' media="segment$Number$.m4s" startNumber="1">' % SAMPLE_RATE,
+        '          <SegmentTimeline>',
+        '            <S t="0" d="%d" r="%d"/>' % (SEGMENT_DURATION, SEGMENT_COUNT - 1),
+        '          </SegmentTimeline>',
+        '        </SegmentTemplate>',
+        '      </Representation>',
+        '    </AdaptationSet>',
+        '  </Period>',
+        '</MPD>',
+        '',
+    ]))
+    write('dash/init.mp4', init_segment())
+    for index in range(SEGMENT_COUNT):
+        write('dash/segment%d.m4s' % (index + 1), media_segment(index))
+
+
+# Progressive: a WAV file
+
+def generate_progressive():
+    sample_rate = 8000
+    samples = b''.join(
+        struct.pack('<h', int(8000 * math.sin(2 * math.pi * 440 * i / sample_rate)))
+        for i in range(sample_rate * SEGMENT_COUNT * 2))
+    fmt = struct.pack('<HHIIHH', 1, 1, sample_rate, sample_rate * 2, 2, 16)
+    riff = b'WAVE' + b'fmt ' + struct.pack('<I', len(fmt)) + fmt \
+        + b'data' + struct.pack('<I', len(samples)) + samples
+    write('progressive/audio.wav', b'RIFF' + struct.pack('<I', len(riff)) + riff)
+
+
+if __name__ == '__main__':
+    generate_hls()
+    generate_dash()
+    generate_progressive()
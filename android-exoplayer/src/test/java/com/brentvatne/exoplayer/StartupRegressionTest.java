@@ -0,0 +1,363 @@
+package com.brentvatne.exoplayer;
+
+import android.app.Activity;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Looper;
+import android.view.View;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.CatalystInstance;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.ThemedReactContext;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.MediaCodecInfoBuilder;
+import org.robolectric.shadows.ShadowMediaCodec;
+import org.robolectric.shadows.ShadowMediaCodecList;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.Okio;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Starts the fixtures of {@code resources/startup} with a paused player, served by a local server
+ * with a fixed round trip time, and checks the requests made until the player is ready against the
+ * budgets of {@code thresholds.properties}.
+ *
+ * The time to ready depends on the machine and on the scheduling of the test threads, so it is
+ * only checked against its budget when the {@value #TIME_BUDGETS_PROPERTY} system property is
+ * true, e.g. on a dedicated CI job. Each fixture is started once to load the classes and open the
+ * connection before the measured start, so the time to ready is the one of the player and not of
+ * the test runner. The results are always written to
+ * {@code build/reports/startup/results.properties}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class StartupRegressionTest {
+
+    private static final String FIXTURES = "startup/";
+    private static final String TIME_BUDGETS_PROPERTY = "startup.timeBudgets";
+    private static final long ROUND_TRIP_TIME_MS = 20;
+    private static final long TIMEOUT_MS = 10000;
+    private static final String AAC_DECODER_NAME = "test.decoder.aac";
+    private static final int CODEC_BUFFER_SIZE = 150000;
+
+    private static final String EVENT_STARTUP_TRACE = "onVideoStartupTrace";
+    private static final String EVENT_ERROR = "onVideoError";
+
+    private MockWebServer server;
+    private final List<String> requestPaths = Collections.synchronizedList(new ArrayList<String>());
+    private final List<RecordedEvent> events = Collections.synchronizedList(new ArrayList<RecordedEvent>());
+    private MockedStatic<Arguments> arguments;
+    private Activity activity;
+    private ThemedReactContext reactContext;
+
+    private static final class RecordedEvent {
+        final String type;
+        final WritableMap event;
+
+        RecordedEvent(String type, WritableMap event) {
+            this.type = type;
+            this.event = event;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new FixtureDispatcher());
+        server.start();
+
+        // The event maps are native maps in the app, which need the React Native libraries
+        arguments = Mockito.mockStatic(Arguments.class);
+        arguments.when(Arguments::createMap).thenAnswer(new Answer<WritableMap>() {
+            @Override
+            public WritableMap answer(InvocationOnMock invocation) {
+                return new JavaOnlyMap();
+            }
+        });
+        arguments.when(Arguments::createArray).thenAnswer(new Answer<JavaOnlyArray>() {
+            @Override
+            public JavaOnlyArray answer(InvocationOnMock invocation) {
+                return new JavaOnlyArray();
+            }
+        });
+
+        RCTEventEmitter eventEmitter = mock(RCTEventEmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                events.add(new RecordedEvent((String) invocation.getArgument(1), (WritableMap) invocation.getArgument(2)));
+                return null;
+            }
+        }).when(eventEmitter).receiveEvent(anyInt(), anyString(), any());
+        CatalystInstance catalystInstance = mock(CatalystInstance.class, Mockito.RETURNS_DEEP_STUBS);
+        when(catalystInstance.getJSModule(RCTEventEmitter.class)).thenReturn(eventEmitter);
+        ReactApplicationContext applicationContext = new ReactApplicationContext(RuntimeEnvironment.getApplication());
+        applicationContext.initializeWithInstance(catalystInstance);
+
+        activity = Robolectric.buildActivity(Activity.class).setup().get();
+        reactContext = new ThemedReactContext(applicationContext, activity);
+
+        addPassThroughAacDecoder();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        arguments.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void hls() throws Exception {
+        assertStartupWithinBudget("hls", "hls/multivariant.m3u8");
+    }
+
+    @Test
+    public void dash() throws Exception {
+        assertStartupWithinBudget("dash", "dash/manifest.mpd");
+    }
+
+    @Test
+    public void progressive() throws Exception {
+        assertStartupWithinBudget("progressive", "progressive/audio.wav");
+    }
+
+    private void assertStartupWithinBudget(String fixture, String path) throws Exception {
+        Properties thresholds = new Properties();
+        try (InputStream input = openFixture("thresholds.properties")) {
+            thresholds.load(input);
+        }
+        int maxRequests = Integer.parseInt(thresholds.getProperty(fixture + ".maxRequests"));
+        double maxReadyTimeMs = Double.parseDouble(thresholds.getProperty(fixture + ".maxReadyTimeMs"));
+
+        start("warmup/" + path);
+        WritableMap trace = start("measured/" + path);
+
+        int requests = countRequests("/measured/");
+        assertTrue("No readyTime in the startup trace " + trace, trace.hasKey("readyTime"));
+        double readyTimeMs = trace.getDouble("readyTime");
+        ReadableMap counters = trace.getMap("counters");
+        report(fixture, requests, readyTimeMs, counters);
+
+        assertTrue(String.format(Locale.US, "%s made %d requests before being ready, the budget is %d: %s",
+                fixture, requests, maxRequests, requestPaths), requests <= maxRequests);
+        if (Boolean.getBoolean(TIME_BUDGETS_PROPERTY)) {
+            assertTrue(String.format(Locale.US, "%s took %.1f ms to be ready, the budget is %.0f ms",
+                    fixture, readyTimeMs, maxReadyTimeMs), readyTimeMs <= maxReadyTimeMs);
+        }
+    }
+
+    /**
+     * Mounts a paused player with the source, as a render of the app does, and waits for its
+     * startup trace.
+     *
+     * @return The startup trace.
+     */
+    private WritableMap start(String path) throws InterruptedException {
+        events.clear();
+        ReactExoplayerView view = new ReactExoplayerView(reactContext, new DefaultReactExoplayerConfig(activity));
+        view.setId(1);
+        // Only the first segment is needed to be ready, the player stops loading after it
+        view.setBufferConfig(1500, 1500, 1000, 1000,
+                ReactExoplayerView.DEFAULT_MAX_HEAP_ALLOCATION_PERCENT,
+                ReactExoplayerView.DEFAULT_MIN_BACK_BUFFER_MEMORY_RESERVE,
+                ReactExoplayerView.DEFAULT_MIN_BUFFER_MEMORY_RESERVE,
+                -1);
+        view.setPausedModifier(true);
+        view.setSrc(Uri.parse(server.url("/" + path).toString()), null, null);
+        view.commitPropChanges();
+        activity.setContentView(view);
+        try {
+            return awaitEvent(EVENT_STARTUP_TRACE);
+        } finally {
+            view.cleanUpResources();
+            activity.setContentView(new View(activity));
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+
+    /**
+     * Runs the main looper until the event is emitted. The clock of the main looper only moves
+     * when it is run, the loads happen on other threads in real time.
+     */
+    private WritableMap awaitEvent(String type) throws InterruptedException {
+        long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadlineMs) {
+            synchronized (events) {
+                for (RecordedEvent event : events) {
+                    if (event.type.equals(type)) {
+                        assertNotNull(event.event);
+                        return event.event;
+                    }
+                    if (event.type.equals(EVENT_ERROR)) {
+                        fail("The player failed to start: " + event.event);
+                    }
+                }
+            }
+            shadowOf(Looper.getMainLooper()).idleFor(10, TimeUnit.MILLISECONDS);
+            Thread.sleep(1);
+        }
+        fail("No " + type + " after " + TIMEOUT_MS + " ms, requests: " + requestPaths);
+        return null;
+    }
+
+    private int countRequests(String prefix) {
+        int count = 0;
+        synchronized (requestPaths) {
+            for (String path : requestPaths) {
+                if (path.startsWith(prefix)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void report(String fixture, int requests, double readyTimeMs, ReadableMap counters)
+            throws IOException {
+        File directory = new File("build/reports/startup");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, "results.properties");
+        Properties results = new Properties();
+        if (file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                results.load(input);
+            }
+        }
+        results.setProperty(fixture + ".requests", Integer.toString(requests));
+        results.setProperty(fixture + ".readyTimeMs", String.format(Locale.US, "%.1f", readyTimeMs));
+        if (counters != null) {
+            for (String counter : new String[] {
+                    StartupTracer.COUNTER_REQUESTS,
+                    StartupTracer.COUNTER_MANIFEST_REQUESTS,
+                    StartupTracer.COUNTER_BYTES_LOADED}) {
+                if (counters.hasKey(counter)) {
+                    results.setProperty(fixture + ".counters." + counter,
+                            Long.toString((long) counters.getDouble(counter)));
+                }
+            }
+        }
+        try (OutputStream output = new FileOutputStream(file)) {
+            results.store(output, "Startup of the fixtures, see thresholds.properties");
+        }
+    }
+
+    private static void addPassThroughAacDecoder() {
+        MediaFormat format = new MediaFormat();
+        format.setString(MediaFormat.KEY_MIME, MimeTypes.AUDIO_AAC);
+        ShadowMediaCodecList.addCodec(MediaCodecInfoBuilder.newBuilder()
+                .setName(AAC_DECODER_NAME)
+                .setCapabilities(MediaCodecInfoBuilder.CodecCapabilitiesBuilder.newBuilder()
+                        .setMediaFormat(format)
+                        .setProfileLevels(new MediaCodecInfo.CodecProfileLevel[0])
+                        .build())
+                .build());
+        // The fixtures are silent, the decoder only has to hand the buffers back
+        ShadowMediaCodec.addDecoder(AAC_DECODER_NAME, new ShadowMediaCodec.CodecConfig(
+                CODEC_BUFFER_SIZE, CODEC_BUFFER_SIZE, new ShadowMediaCodec.CodecConfig.Codec() {
+                    @Override
+                    public void process(ByteBuffer in, ByteBuffer out) {
+                        out.put(in);
+                    }
+                }));
+    }
+
+    private static InputStream openFixture(String path) throws IOException {
+        InputStream input = StartupRegressionTest.class.getClassLoader().getResourceAsStream(FIXTURES + path);
+        if (input == null) {
+            throw new IOException("No fixture " + path);
+        }
+        return input;
+    }
+
+    /**
+     * Serves {@code /<run>/<fixture path>} from the fixtures, the run prefix keeps the warm up
+     * start out of the caches of the measured one.
+     */
+    private final class FixtureDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String path = request.getPath();
+            requestPaths.add(path);
+            int runEnd = path.indexOf('/', 1);
+            int queryStart = path.indexOf('?');
+            String fixturePath = path.substring(runEnd + 1, queryStart == -1 ? path.length() : queryStart);
+            byte[] body;
+            try (InputStream input = openFixture(fixturePath)) {
+                body = Okio.buffer(Okio.source(input)).readByteArray();
+            } catch (IOException e) {
+                return new MockResponse().setResponseCode(404);
+            }
+            return new MockResponse()
+                    .setHeadersDelay(ROUND_TRIP_TIME_MS, TimeUnit.MILLISECONDS)
+                    .setHeader("Content-Type", getContentType(fixturePath))
+                    .setBody(new Buffer().write(body));
+        }
+
+        private String getContentType(String path) {
+            if (path.endsWith(".m3u8")) {
+                return "application/vnd.apple.mpegurl";
+            } else if (path.endsWith(".mpd")) {
+                return "application/dash+xml";
+            } else if (path.endsWith(".aac")) {
+                return "audio/aac";
+            } else if (path.endsWith(".wav")) {
+                return "audio/wav";
+            }
+            return "audio/mp4";
+        }
+    }
+}
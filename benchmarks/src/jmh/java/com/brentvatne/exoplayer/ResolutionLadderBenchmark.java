@@ -0,0 +1,71 @@
+package com.brentvatne.exoplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing the video tracks of a period, done on every track change, and the lookups done by
+ * {@code selectedVideoTrack} with the {@code resolution} type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResolutionLadderBenchmark {
+
+    private static final int[] HEIGHTS = {144, 240, 360, 480, 540, 720, 1080, 1440, 2160};
+
+    /** Number of track groups, e.g. one per codec or per camera angle. */
+    @Param({"1", "4"})
+    public int groupCount;
+
+    private int[] heights;
+    private int[] bitrates;
+    private int[] groupIndexes;
+    private int[] trackIndexes;
+    private ResolutionLadder ladder;
+
+    @Setup
+    public void setUp() {
+        int count = groupCount * HEIGHTS.length;
+        heights = new int[count];
+        bitrates = new int[count];
+        groupIndexes = new int[count];
+        trackIndexes = new int[count];
+        int track = 0;
+        for (int group = 0; group < groupCount; group++) {
+            // Manifests usually list the tracks from the highest to the lowest
+            for (int i = HEIGHTS.length - 1; i >= 0; i--) {
+                heights[track] = HEIGHTS[i];
+                bitrates[track] = HEIGHTS[i] * 4000 + group * 1000;
+                groupIndexes[track] = group;
+                trackIndexes[track] = HEIGHTS.length - 1 - i;
+                track++;
+            }
+        }
+        ladder = new ResolutionLadder(heights, bitrates, groupIndexes, trackIndexes);
+    }
+
+    @Benchmark
+    public ResolutionLadder build() {
+        return new ResolutionLadder(heights, bitrates, groupIndexes, trackIndexes);
+    }
+
+    @Benchmark
+    public int findExact() {
+        return ladder.findExact(720);
+    }
+
+    @Benchmark
+    public int findClosestBelow() {
+        // Not in the ladder, e.g. a resolution reported by another rendition
+        return ladder.findClosestBelow(1000);
+    }
+}
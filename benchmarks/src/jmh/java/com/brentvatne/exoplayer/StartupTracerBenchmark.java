@@ -0,0 +1,52 @@
+package com.brentvatne.exoplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost the startup tracer adds to every startup, and the construction of the Chrome trace
+ * sent with {@code onStartupTrace}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StartupTracerBenchmark {
+
+    private final StartupTracer tracer = new StartupTracer();
+    private StartupTracer.Trace trace;
+
+    @Setup
+    public void setUp() {
+        trace = recordStartup();
+    }
+
+    @Benchmark
+    public StartupTracer.Trace recordStartup() {
+        tracer.start();
+        tracer.begin(StartupTracer.PHASE_PLAYER_CORE);
+        tracer.end(StartupTracer.PHASE_PLAYER_CORE);
+        tracer.begin(StartupTracer.PHASE_DRM);
+        tracer.end(StartupTracer.PHASE_DRM);
+        tracer.begin(StartupTracer.PHASE_MAIN_THREAD_HOP);
+        tracer.end(StartupTracer.PHASE_MAIN_THREAD_HOP);
+        tracer.begin(StartupTracer.PHASE_SOURCE);
+        tracer.begin(StartupTracer.PHASE_PREPARE);
+        tracer.begin(StartupTracer.PHASE_FIRST_FRAME);
+        tracer.end(StartupTracer.PHASE_SOURCE);
+        tracer.end(StartupTracer.PHASE_PREPARE);
+        tracer.end(StartupTracer.PHASE_FIRST_FRAME);
+        return tracer.finish();
+    }
+
+    @Benchmark
+    public String toChromeTraceJson() {
+        return trace.toChromeTraceJson();
+    }
+}
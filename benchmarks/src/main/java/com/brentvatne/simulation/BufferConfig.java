@@ -0,0 +1,38 @@
+package com.brentvatne.simulation;
+
+/**
+ * The buffer durations of the {@code bufferConfig} prop.
+ */
+final class BufferConfig {
+
+    /** The ExoPlayer defaults, used when {@code bufferConfig} is not set. */
+    static final BufferConfig DEFAULT = new BufferConfig("default", 50000, 50000, 2500, 5000);
+
+    final String name;
+    final long minBufferMs;
+    final long maxBufferMs;
+    final long bufferForPlaybackMs;
+    final long bufferForPlaybackAfterRebufferMs;
+
+    BufferConfig(String name, long minBufferMs, long maxBufferMs, long bufferForPlaybackMs,
+                 long bufferForPlaybackAfterRebufferMs) {
+        this.name = name;
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+    }
+
+    /**
+     * @param value {@code name:minBufferMs:maxBufferMs:bufferForPlaybackMs:bufferForPlaybackAfterRebufferMs}
+     */
+    static BufferConfig parse(String value) {
+        String[] fields = value.split(":");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Expected name:minBufferMs:maxBufferMs:bufferForPlaybackMs:"
+                    + "bufferForPlaybackAfterRebufferMs, got " + value);
+        }
+        return new BufferConfig(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+    }
+}
@@ -0,0 +1,154 @@
+package com.brentvatne.simulation;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares buffer configurations by playing the same source over recorded network traces.
+ *
+ * Usage: {@code LoadControlSimulation --trace <file> [--trace <file>...] [--config
+ * name:minBufferMs:maxBufferMs:bufferForPlaybackMs:bufferForPlaybackAfterRebufferMs...]
+ * [--bitrates 400000,1200000,...] [--segment <ms>] [--duration <ms>] [--output <file>]}
+ *
+ * Every configuration is played over every trace, the ExoPlayer defaults when no configuration is
+ * given. The report is written as JSON, with the rebuffers, the bitrate timeline and the buffer
+ * occupancy of each run.
+ */
+public final class LoadControlSimulation {
+
+    private static final int[] DEFAULT_BITRATES = {400000, 800000, 1500000, 3000000, 6000000};
+    private static final long DEFAULT_SEGMENT_DURATION_MS = 4000;
+    private static final long DEFAULT_CONTENT_DURATION_MS = 10 * 60 * 1000;
+
+    private LoadControlSimulation() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> tracePaths = new ArrayList<>();
+        List<BufferConfig> configs = new ArrayList<>();
+        int[] bitrates = DEFAULT_BITRATES;
+        long segmentDurationMs = DEFAULT_SEGMENT_DURATION_MS;
+        long contentDurationMs = DEFAULT_CONTENT_DURATION_MS;
+        String outputPath = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--trace":
+                    tracePaths.add(value);
+                    break;
+                case "--config":
+                    configs.add(BufferConfig.parse(value));
+                    break;
+                case "--bitrates":
+                    String[] fields = value.split(",");
+                    bitrates = new int[fields.length];
+                    for (int j = 0; j < fields.length; j++) {
+                        bitrates[j] = Integer.parseInt(fields[j].trim());
+                    }
+                    Arrays.sort(bitrates);
+                    break;
+                case "--segment":
+                    segmentDurationMs = Long.parseLong(value);
+                    break;
+                case "--duration":
+                    contentDurationMs = Long.parseLong(value);
+                    break;
+                case "--output":
+                    outputPath = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (tracePaths.isEmpty()) {
+            throw new IllegalArgumentException("At least one --trace is required");
+        }
+        if (configs.isEmpty()) {
+            configs.add(BufferConfig.DEFAULT);
+        }
+
+        PlaybackSimulator simulator = new PlaybackSimulator(bitrates, segmentDurationMs, contentDurationMs);
+        StringBuilder json = new StringBuilder("{\"runs\":[");
+        boolean first = true;
+        for (String tracePath : tracePaths) {
+            NetworkTrace trace;
+            try (Reader reader = new FileReader(tracePath)) {
+                trace = NetworkTrace.parse(reader);
+            }
+            for (BufferConfig config : configs) {
+                PlaybackSimulator.Result result = simulator.run(config, trace);
+                System.err.println(String.format("%s / %s: startup %dms, %d rebuffers (%dms)",
+                        tracePath, config.name, result.startupMs, result.rebuffers.size(),
+                        result.getTotalRebufferMs()));
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendResult(json, tracePath, result);
+            }
+        }
+        json.append("]}");
+
+        if (outputPath == null) {
+            System.out.println(json);
+        } else {
+            try (PrintStream output = new PrintStream(outputPath, "UTF-8")) {
+                output.println(json);
+            }
+        }
+    }
+
+    private static void appendResult(StringBuilder json, String tracePath, PlaybackSimulator.Result result) {
+        BufferConfig config = result.config;
+        json.append("{\"trace\":").append(quote(tracePath))
+                .append(",\"config\":{\"name\":").append(quote(config.name))
+                .append(",\"minBufferMs\":").append(config.minBufferMs)
+                .append(",\"maxBufferMs\":").append(config.maxBufferMs)
+                .append(",\"bufferForPlaybackMs\":").append(config.bufferForPlaybackMs)
+                .append(",\"bufferForPlaybackAfterRebufferMs\":").append(config.bufferForPlaybackAfterRebufferMs)
+                .append("},\"startupMs\":").append(result.startupMs)
+                .append(",\"endMs\":").append(result.endMs)
+                .append(",\"bytesLoaded\":").append(result.bytesLoaded)
+                .append(",\"rebufferCount\":").append(result.rebuffers.size())
+                .append(",\"rebufferMs\":").append(result.getTotalRebufferMs())
+                .append(",\"rebuffers\":[");
+        for (int i = 0; i < result.rebuffers.size(); i++) {
+            PlaybackSimulator.Rebuffer rebuffer = result.rebuffers.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"startMs\":").append(rebuffer.startMs)
+                    .append(",\"durationMs\":").append(rebuffer.durationMs).append('}');
+        }
+        json.append("],\"bitrates\":");
+        appendSamples(json, result.bitrates);
+        json.append(",\"bufferedDurations\":");
+        appendSamples(json, result.bufferedDurations);
+        json.append('}');
+    }
+
+    /** Samples are written as {@code [timeMs, value]} pairs to keep the report small. */
+    private static void appendSamples(StringBuilder json, List<PlaybackSimulator.Sample> samples) {
+        json.append('[');
+        for (int i = 0; i < samples.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('[').append(samples.get(i).timeMs).append(',').append(samples.get(i).value).append(']');
+        }
+        json.append(']');
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
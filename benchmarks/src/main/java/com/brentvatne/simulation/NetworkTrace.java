@@ -0,0 +1,129 @@
+package com.brentvatne.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded network conditions, replayed in a loop.
+ *
+ * A trace is a CSV file with one line per period of stable conditions:
+ * {@code durationMs,bandwidthKbps,latencyMs}. Empty lines and lines starting with {@code #} are
+ * ignored.
+ */
+final class NetworkTrace {
+
+    private final long[] durationsMs;
+    private final long[] bandwidthsKbps;
+    private final long[] latenciesMs;
+    private final long totalDurationMs;
+
+    NetworkTrace(long[] durationsMs, long[] bandwidthsKbps, long[] latenciesMs) {
+        if (durationsMs.length == 0) {
+            throw new IllegalArgumentException("Empty network trace");
+        }
+        this.durationsMs = durationsMs;
+        this.bandwidthsKbps = bandwidthsKbps;
+        this.latenciesMs = latenciesMs;
+        long total = 0;
+        boolean hasBandwidth = false;
+        for (int i = 0; i < durationsMs.length; i++) {
+            if (durationsMs[i] <= 0) {
+                throw new IllegalArgumentException("Trace periods must last at least 1ms");
+            }
+            total += durationsMs[i];
+            hasBandwidth |= bandwidthsKbps[i] > 0;
+        }
+        if (!hasBandwidth) {
+            throw new IllegalArgumentException("The network trace never has any bandwidth");
+        }
+        totalDurationMs = total;
+    }
+
+    static NetworkTrace parse(Reader reader) throws IOException {
+        List<long[]> periods = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IOException("Line " + lineNumber + ": expected durationMs,bandwidthKbps,latencyMs");
+            }
+            try {
+                periods.add(new long[] {
+                        Long.parseLong(fields[0].trim()),
+                        Long.parseLong(fields[1].trim()),
+                        Long.parseLong(fields[2].trim())});
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        long[] durationsMs = new long[periods.size()];
+        long[] bandwidthsKbps = new long[periods.size()];
+        long[] latenciesMs = new long[periods.size()];
+        for (int i = 0; i < periods.size(); i++) {
+            durationsMs[i] = periods.get(i)[0];
+            bandwidthsKbps[i] = periods.get(i)[1];
+            latenciesMs[i] = periods.get(i)[2];
+        }
+        return new NetworkTrace(durationsMs, bandwidthsKbps, latenciesMs);
+    }
+
+    /**
+     * @return The time at which a request sent at {@code startMs} for {@code bytes} completes. The
+     *     latency of the period the request is sent in is paid once, then the body is received at
+     *     the bandwidth of each period it spans.
+     */
+    long getCompletionTimeMs(long startMs, long bytes) {
+        long timeMs = startMs + latenciesMs[getPeriodIndex(startMs)];
+        double remainingBits = bytes * 8d;
+        while (remainingBits > 0) {
+            int period = getPeriodIndex(timeMs);
+            long periodEndMs = timeMs - getOffsetInPeriodMs(timeMs) + durationsMs[period];
+            // Kilobits per second are bits per millisecond
+            double bitsPerMs = bandwidthsKbps[period];
+            if (bitsPerMs <= 0) {
+                // No connectivity, wait for the next period
+                timeMs = periodEndMs;
+                continue;
+            }
+            double periodBits = (periodEndMs - timeMs) * bitsPerMs;
+            if (periodBits >= remainingBits) {
+                return timeMs + (long) Math.ceil(remainingBits / bitsPerMs);
+            }
+            remainingBits -= periodBits;
+            timeMs = periodEndMs;
+        }
+        return timeMs;
+    }
+
+    private int getPeriodIndex(long timeMs) {
+        long offsetMs = timeMs % totalDurationMs;
+        for (int i = 0; i < durationsMs.length; i++) {
+            if (offsetMs < durationsMs[i]) {
+                return i;
+            }
+            offsetMs -= durationsMs[i];
+        }
+        return durationsMs.length - 1;
+    }
+
+    private long getOffsetInPeriodMs(long timeMs) {
+        long offsetMs = timeMs % totalDurationMs;
+        for (long durationMs : durationsMs) {
+            if (offsetMs < durationMs) {
+                return offsetMs;
+            }
+            offsetMs -= durationMs;
+        }
+        return offsetMs;
+    }
+}
@@ -0,0 +1,171 @@
+package com.brentvatne.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays a segmented source over a {@link NetworkTrace} on a simulated clock.
+ *
+ * The model follows the ExoPlayer policies the player is configured with: loading stops once the
+ * buffer reaches {@code maxBufferMs} and resumes when it drops below {@code minBufferMs}, playback
+ * starts or resumes once {@code bufferForPlaybackMs} or {@code bufferForPlaybackAfterRebufferMs}
+ * is buffered, and each segment is loaded at the highest bitrate below a fraction of the
+ * bandwidth estimate. The bandwidth estimate is an exponential average of the segment throughputs,
+ * simpler than the one of the device, so results compare configurations rather than predict
+ * absolute numbers. Runs are deterministic.
+ */
+final class PlaybackSimulator {
+
+    /** Fraction of the estimated bandwidth a track may use, as in {@code AdaptiveTrackSelection}. */
+    private static final double BANDWIDTH_FRACTION = 0.7;
+    private static final double ESTIMATE_WEIGHT = 0.3;
+    private static final long INITIAL_BANDWIDTH_ESTIMATE_BPS = 1000000;
+
+    static final class Rebuffer {
+        final long startMs;
+        final long durationMs;
+
+        Rebuffer(long startMs, long durationMs) {
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+        }
+    }
+
+    /** A value of the timelines, e.g. the bitrate of the segments loaded from that time. */
+    static final class Sample {
+        final long timeMs;
+        final long value;
+
+        Sample(long timeMs, long value) {
+            this.timeMs = timeMs;
+            this.value = value;
+        }
+    }
+
+    static final class Result {
+        final BufferConfig config;
+        long startupMs = -1;
+        long endMs;
+        final List<Rebuffer> rebuffers = new ArrayList<>();
+        final List<Sample> bitrates = new ArrayList<>();
+        final List<Sample> bufferedDurations = new ArrayList<>();
+        long bytesLoaded;
+
+        Result(BufferConfig config) {
+            this.config = config;
+        }
+
+        long getTotalRebufferMs() {
+            long total = 0;
+            for (Rebuffer rebuffer : rebuffers) {
+                total += rebuffer.durationMs;
+            }
+            return total;
+        }
+    }
+
+    private final int[] bitrates;
+    private final long segmentDurationMs;
+    private final long contentDurationMs;
+
+    /**
+     * @param bitrates The bitrates of the video tracks, in bits per second, in increasing order.
+     */
+    PlaybackSimulator(int[] bitrates, long segmentDurationMs, long contentDurationMs) {
+        this.bitrates = bitrates;
+        this.segmentDurationMs = segmentDurationMs;
+        this.contentDurationMs = contentDurationMs;
+    }
+
+    Result run(BufferConfig config, NetworkTrace trace) {
+        Result result = new Result(config);
+        long clockMs = 0;
+        long bufferedMs = 0;
+        long loadedMs = 0;
+        boolean playing = false;
+        boolean rebuffering = false;
+        long rebufferStartMs = 0;
+        boolean loading = true;
+        double bandwidthEstimateBps = INITIAL_BANDWIDTH_ESTIMATE_BPS;
+        int lastBitrate = -1;
+        result.bufferedDurations.add(new Sample(0, 0));
+
+        while (loadedMs < contentDurationMs || bufferedMs > 0) {
+            // Load control, with the hysteresis of DefaultLoadControl
+            if (bufferedMs < config.minBufferMs) {
+                loading = true;
+            } else if (bufferedMs >= config.maxBufferMs) {
+                loading = false;
+            }
+
+            long nextEventMs;
+            if (loading && loadedMs < contentDurationMs) {
+                int bitrate = selectBitrate(bandwidthEstimateBps);
+                if (bitrate != lastBitrate) {
+                    result.bitrates.add(new Sample(clockMs, bitrate));
+                    lastBitrate = bitrate;
+                }
+                long segmentMs = Math.min(segmentDurationMs, contentDurationMs - loadedMs);
+                long bytes = bitrate * segmentMs / 8000;
+                nextEventMs = trace.getCompletionTimeMs(clockMs, bytes);
+                long downloadMs = Math.max(1, nextEventMs - clockMs);
+                bandwidthEstimateBps = ESTIMATE_WEIGHT * (bytes * 8000d / downloadMs)
+                        + (1 - ESTIMATE_WEIGHT) * bandwidthEstimateBps;
+                result.bytesLoaded += bytes;
+
+                // Playback goes on while the segment loads
+                if (playing && bufferedMs < nextEventMs - clockMs) {
+                    long stallMs = clockMs + bufferedMs;
+                    bufferedMs = 0;
+                    playing = false;
+                    rebuffering = true;
+                    rebufferStartMs = stallMs;
+                    result.bufferedDurations.add(new Sample(stallMs, 0));
+                } else if (playing) {
+                    bufferedMs -= nextEventMs - clockMs;
+                }
+                clockMs = nextEventMs;
+                bufferedMs += segmentMs;
+                loadedMs += segmentMs;
+            } else if (playing) {
+                // Nothing to load until the buffer drains below the minimum, or until the end
+                long drainMs = loadedMs < contentDurationMs
+                        ? Math.max(1, bufferedMs - config.minBufferMs + 1) : bufferedMs;
+                drainMs = Math.min(drainMs, bufferedMs);
+                clockMs += drainMs;
+                bufferedMs -= drainMs;
+                if (bufferedMs == 0 && loadedMs >= contentDurationMs) {
+                    result.bufferedDurations.add(new Sample(clockMs, 0));
+                    break;
+                }
+            }
+
+            // Playback start, as in DefaultLoadControl.shouldStartPlayback. Playback also starts
+            // when loading stopped, i.e. the configuration requires more than the maximum buffer.
+            long requiredMs = rebuffering ? config.bufferForPlaybackAfterRebufferMs : config.bufferForPlaybackMs;
+            if (!playing && (bufferedMs >= requiredMs || loadedMs >= contentDurationMs || !loading)) {
+                playing = true;
+                if (result.startupMs == -1) {
+                    result.startupMs = clockMs;
+                }
+                if (rebuffering) {
+                    result.rebuffers.add(new Rebuffer(rebufferStartMs, clockMs - rebufferStartMs));
+                    rebuffering = false;
+                }
+            }
+            result.bufferedDurations.add(new Sample(clockMs, bufferedMs));
+        }
+        result.endMs = clockMs;
+        return result;
+    }
+
+    private int selectBitrate(double bandwidthEstimateBps) {
+        double allowedBps = bandwidthEstimateBps * BANDWIDTH_FRACTION;
+        for (int i = bitrates.length - 1; i >= 0; i--) {
+            if (bitrates[i] <= allowedBps) {
+                return bitrates[i];
+            }
+        }
+        return bitrates[0];
+    }
+}